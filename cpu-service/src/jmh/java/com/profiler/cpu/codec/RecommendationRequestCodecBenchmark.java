@@ -0,0 +1,95 @@
+package com.profiler.cpu.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.profiler.cpu.model.BuildingContext;
+import com.profiler.cpu.model.CustomerContext;
+import com.profiler.cpu.model.DeviceContext;
+import com.profiler.cpu.model.RecommendationRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binary codec against Jackson for the request of a LARGE customer, shaped like the seed data
+ * (125 buildings, 60 devices each). The payload sizes are printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RecommendationRequestCodecBenchmark {
+    
+    private static final int BUILDINGS = 125;
+    private static final int DEVICES_PER_BUILDING = 60;
+    private static final String[] BUILDING_TYPES = {"RESIDENTIAL", "COMMERCIAL", "INDUSTRIAL"};
+    private static final String[] DEVICE_TYPES = {"SENSOR", "ACTUATOR", "CONTROLLER", "CAMERA", "THERMOSTAT", "SMART_LOCK"};
+    private static final String[] MANUFACTURERS = {"TechCorp", "SmartDevices Inc", "IoT Solutions", "AutomationPro"};
+    private static final String[] STATUSES = {"MAINTENANCE", "INACTIVE", "ACTIVE", "ACTIVE", "ACTIVE", "ACTIVE"};
+    
+    private final RecommendationRequestCodec codec = new RecommendationRequestCodec();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    private RecommendationRequest request;
+    private byte[] binary;
+    private byte[] json;
+    
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        List<BuildingContext> buildings = new ArrayList<>(BUILDINGS);
+        List<DeviceContext> devices = new ArrayList<>(BUILDINGS * DEVICES_PER_BUILDING);
+        for (int b = 0; b < BUILDINGS; b++) {
+            buildings.add(new BuildingContext(1_000L + b, BUILDING_TYPES[random.nextInt(BUILDING_TYPES.length)],
+                    100 + random.nextInt(900), DEVICES_PER_BUILDING));
+            for (int d = 0; d < DEVICES_PER_BUILDING; d++) {
+                devices.add(new DeviceContext(
+                        100_000L + devices.size(),
+                        DEVICE_TYPES[random.nextInt(DEVICE_TYPES.length)],
+                        MANUFACTURERS[random.nextInt(MANUFACTURERS.length)],
+                        String.format("MODEL-%04d", random.nextInt(10_000)),
+                        5 + random.nextInt(95),
+                        STATUSES[random.nextInt(STATUSES.length)]));
+            }
+        }
+        request = RecommendationRequest.builder()
+                .customerId(7L)
+                .customer(new CustomerContext(7L, "Large Enterprise 7", "LARGE", BUILDINGS, devices.size()))
+                .buildings(buildings)
+                .devices(devices)
+                .build();
+        
+        binary = codec.encode(request);
+        json = objectMapper.writeValueAsBytes(request);
+        System.out.printf("%nPayload per request: binary %d bytes, JSON %d bytes%n", binary.length, json.length);
+    }
+    
+    @Benchmark
+    public byte[] encodeBinary() {
+        return codec.encode(request);
+    }
+    
+    @Benchmark
+    public byte[] encodeJson() throws IOException {
+        return objectMapper.writeValueAsBytes(request);
+    }
+    
+    @Benchmark
+    public RecommendationRequest decodeBinary() throws IOException {
+        return codec.decode(new ByteArrayInputStream(binary));
+    }
+    
+    @Benchmark
+    public RecommendationRequest decodeJson() throws IOException {
+        return objectMapper.readValue(json, RecommendationRequest.class);
+    }
+}
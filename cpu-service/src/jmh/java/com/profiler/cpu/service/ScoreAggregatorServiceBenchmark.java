@@ -0,0 +1,55 @@
+package com.profiler.cpu.service;
+
+import com.profiler.cpu.util.MathKernels;
+import com.profiler.cpu.util.MathUtils;
+import com.profiler.cpu.util.ScoreCalculator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregation of one device type's scores as the compatibility analyzer calls it: the hash and
+ * matrix work plus the fused summary, with the scalar kernels and the memo off as by default.
+ * aggregateScores reorders its input, so every operation starts from a fresh copy of the scores.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ScoreAggregatorServiceBenchmark {
+    
+    @Param({"100", "1000", "10000"})
+    private int n;
+    
+    private ScoreAggregatorService scoreAggregatorService;
+    private double[] scores;
+    private double[] work;
+    
+    @Setup
+    public void setUp() {
+        MathKernels kernels = MathKernels.select("scalar");
+        MathUtils mathUtils = new MathUtils(kernels, new SimpleMeterRegistry(), false, 1024, 16);
+        scoreAggregatorService = new ScoreAggregatorService(mathUtils, new ScoreCalculator(kernels));
+        
+        Random random = new Random(42);
+        scores = new double[n];
+        for (int i = 0; i < n; i++) {
+            scores[i] = random.nextDouble() * 100;
+        }
+        work = new double[n];
+    }
+    
+    @Benchmark
+    public double aggregateScores() {
+        System.arraycopy(scores, 0, work, 0, n);
+        return scoreAggregatorService.aggregateScores(work, "THERMOSTAT", n);
+    }
+}
@@ -0,0 +1,67 @@
+package com.profiler.cpu.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matrix multiplication and score moments per kernel; the original 2D multiplication is in
+ * {@link Multiply2dBenchmark}. Only the scalar kernels run by default; -PvectorKernels builds
+ * the vector kernels and adds their trials: ./gradlew :cpu-service:jmh -PvectorKernels
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MathKernelsBenchmark {
+    
+    @Param({"scalar"})
+    private String kernels;
+    
+    @Param({"10", "64", "256"})
+    private int size;
+    
+    private MathKernels mathKernels;
+    private double[] a;
+    private double[] b;
+    private double[] values;
+    private double[] moments;
+    
+    @Setup
+    public void setUp() {
+        mathKernels = MathKernels.select(kernels);
+        
+        Random random = new Random(42);
+        a = new double[size * size];
+        b = new double[size * size];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = random.nextDouble();
+            b[i] = random.nextDouble();
+        }
+        
+        // Score moments over as many values as the matrices have cells
+        values = new double[size * size];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextDouble() * 100;
+        }
+        moments = new double[5];
+    }
+    
+    @Benchmark
+    public double[] multiply() {
+        return mathKernels.multiply(a, b, size);
+    }
+    
+    @Benchmark
+    public double[] moments() {
+        mathKernels.moments(values, 1.0 / values.length, moments);
+        return moments;
+    }
+}
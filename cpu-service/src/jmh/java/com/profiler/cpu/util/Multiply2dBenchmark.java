@@ -0,0 +1,53 @@
+package com.profiler.cpu.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The original 2D matrix multiplication, the baseline for {@link MathKernelsBenchmark#multiply}.
+ * It does not use the kernels, so it runs once per size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class Multiply2dBenchmark {
+    
+    @Param({"10", "64", "256"})
+    private int size;
+    
+    private MathUtils mathUtils;
+    private double[][] a;
+    private double[][] b;
+    
+    @Setup
+    public void setUp() {
+        mathUtils = new MathUtils(new ScalarMathKernels(), new SimpleMeterRegistry(), false, 1024, 16);
+        
+        // Same matrices as MathKernelsBenchmark
+        Random random = new Random(42);
+        a = new double[size][size];
+        b = new double[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                a[i][j] = random.nextDouble();
+                b[i][j] = random.nextDouble();
+            }
+        }
+    }
+    
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public double[][] multiply2d() {
+        return mathUtils.multiplyMatrices(a, b);
+    }
+}
@@ -0,0 +1,62 @@
+package com.profiler.cpu.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The fused summary of one device type's scores against the List statistics and weighted score
+ * it replaced, boxing included. summarize reorders its input, so every operation starts from a
+ * fresh copy of the scores. Allocation per operation is reported by the gc profiler.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ScoreCalculatorBenchmark {
+    
+    @Param({"100", "1000", "10000"})
+    private int n;
+    
+    private final ScoreCalculator scoreCalculator = new ScoreCalculator(new ScalarMathKernels());
+    
+    private double[] scores;
+    private double[] work;
+    
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        scores = new double[n];
+        for (int i = 0; i < n; i++) {
+            scores[i] = random.nextDouble() * 100;
+        }
+        work = new double[n];
+    }
+    
+    @Benchmark
+    public double[] summarize() {
+        System.arraycopy(scores, 0, work, 0, n);
+        return scoreCalculator.summarize(work);
+    }
+    
+    @Benchmark
+    public double listStatistics() {
+        List<Double> values = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        for (double score : scores) {
+            values.add(score);
+            weights.add(1.0 / n);
+        }
+        double[] stats = scoreCalculator.calculateStatistics(values);
+        return scoreCalculator.calculateWeightedScore(values, weights) + stats[0];
+    }
+}
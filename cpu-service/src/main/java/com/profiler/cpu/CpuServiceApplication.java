@@ -1,8 +1,16 @@
 package com.profiler.cpu;
 
+import com.profiler.cpu.util.MathKernels;
+import io.opentelemetry.context.Context;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
 @SpringBootApplication
 @EnableAutoConfiguration
@@ -11,4 +19,22 @@ public class CpuServiceApplication {
     public static void main(String[] args) {
         SpringApplication.run(CpuServiceApplication.class, args);
     }
+    
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService calculationBatchExecutor(
+            @Value("${calculation.batch.parallelism:0}") int parallelism) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        return Context.taskWrapping(Executors.newFixedThreadPool(threads));
+    }
+    
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool scoringForkJoinPool(
+            @Value("${scoring.parallel.pool-size:0}") int poolSize) {
+        return new ForkJoinPool(poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors());
+    }
+    
+    @Bean
+    public MathKernels mathKernels(@Value("${math.kernels:scalar}") String mode) {
+        return MathKernels.select(mode);
+    }
 }
@@ -0,0 +1,26 @@
+package com.profiler.cpu.codec;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Lets /api/calculate accept the binary wire format next to JSON.
+ * The request Content-Type selects the converter; responses stay JSON.
+ */
+@Configuration
+public class BinaryWireConfiguration implements WebMvcConfigurer {
+    
+    private final RecommendationRequestCodec codec;
+    
+    public BinaryWireConfiguration(RecommendationRequestCodec codec) {
+        this.codec = codec;
+    }
+    
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(0, new RecommendationRequestBinaryConverter(codec));
+    }
+}
@@ -0,0 +1,40 @@
+package com.profiler.cpu.codec;
+
+import com.profiler.cpu.model.RecommendationRequest;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+
+/**
+ * HTTP message converter for RecommendationRequest in the binary wire format
+ */
+public class RecommendationRequestBinaryConverter extends AbstractHttpMessageConverter<RecommendationRequest> {
+    
+    private final RecommendationRequestCodec codec;
+    
+    public RecommendationRequestBinaryConverter(RecommendationRequestCodec codec) {
+        super(WireFormat.MEDIA_TYPE);
+        this.codec = codec;
+    }
+    
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return RecommendationRequest.class.isAssignableFrom(clazz);
+    }
+    
+    @Override
+    protected RecommendationRequest readInternal(Class<? extends RecommendationRequest> clazz,
+                                                 HttpInputMessage inputMessage) throws IOException {
+        return codec.decode(new BufferedInputStream(inputMessage.getBody()));
+    }
+    
+    @Override
+    protected void writeInternal(RecommendationRequest request,
+                                 HttpOutputMessage outputMessage) throws IOException {
+        codec.encode(request, new BufferedOutputStream(outputMessage.getBody()));
+    }
+}
@@ -0,0 +1,324 @@
+package com.profiler.cpu.codec;
+
+import com.profiler.cpu.model.BuildingContext;
+import com.profiler.cpu.model.CustomerContext;
+import com.profiler.cpu.model.DeviceContext;
+import com.profiler.cpu.model.DeviceTypeSummary;
+import com.profiler.cpu.model.RecommendationRequest;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes RecommendationRequest in the binary wire format.
+ * Layout: magic, version, header flags, customer, buildings, devices and, from
+ * version 2 on, device type summaries. Each record starts with a presence byte for
+ * its nullable numeric fields; ids are delta encoded against the previous record
+ * of the same list. Requests without summaries are still written as version 1.
+ */
+@Component
+public class RecommendationRequestCodec {
+    
+    private static final int HAS_CUSTOMER_ID = 1;
+    private static final int HAS_CUSTOMER = 1 << 1;
+    
+    private static final int HAS_ID = 1;
+    private static final int HAS_FIRST = 1 << 1;
+    private static final int HAS_SECOND = 1 << 2;
+    private static final int HAS_THIRD = 1 << 3;
+    private static final int HAS_FOURTH = 1 << 4;
+    private static final int HAS_FIFTH = 1 << 5;
+    private static final int HAS_SIXTH = 1 << 6;
+    
+    private static final int MAX_INITIAL_CAPACITY = 1 << 16;
+    
+    public byte[] encode(RecommendationRequest request) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(estimateSize(request));
+        try {
+            encode(request, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+    
+    public void encode(RecommendationRequest request, OutputStream out) throws IOException {
+        WireWriter writer = new WireWriter(out);
+        writer.writeByte(WireFormat.MAGIC_0);
+        writer.writeByte(WireFormat.MAGIC_1);
+        boolean withSummaries = request.getDeviceSummaries() != null;
+        writer.writeByte(withSummaries ? WireFormat.VERSION : WireFormat.VERSION_DEVICES_ONLY);
+        
+        int flags = (request.getCustomerId() != null ? HAS_CUSTOMER_ID : 0)
+                | (request.getCustomer() != null ? HAS_CUSTOMER : 0);
+        writer.writeByte(flags);
+        if (request.getCustomerId() != null) {
+            writer.writeSignedVarLong(request.getCustomerId());
+        }
+        if (request.getCustomer() != null) {
+            writeCustomer(writer, request.getCustomer());
+        }
+        
+        writeBuildings(writer, request.getBuildings());
+        writeDevices(writer, request.getDevices());
+        if (withSummaries) {
+            writeDeviceSummaries(writer, request.getDeviceSummaries());
+        }
+        writer.flush();
+    }
+    
+    public RecommendationRequest decode(InputStream in) throws IOException {
+        WireReader reader = new WireReader(in);
+        if (reader.readByte() != WireFormat.MAGIC_0 || reader.readByte() != WireFormat.MAGIC_1) {
+            throw new IOException("Not a binary recommendation payload");
+        }
+        int version = reader.readByte();
+        if (version < WireFormat.VERSION_DEVICES_ONLY || version > WireFormat.VERSION) {
+            throw new IOException("Unsupported binary payload version " + version);
+        }
+        
+        int flags = reader.readByte();
+        RecommendationRequest request = new RecommendationRequest();
+        if ((flags & HAS_CUSTOMER_ID) != 0) {
+            request.setCustomerId(reader.readSignedVarLong());
+        }
+        if ((flags & HAS_CUSTOMER) != 0) {
+            request.setCustomer(readCustomer(reader));
+        }
+        
+        request.setBuildings(readBuildings(reader));
+        request.setDevices(readDevices(reader));
+        if (version >= WireFormat.VERSION) {
+            request.setDeviceSummaries(readDeviceSummaries(reader));
+        }
+        return request;
+    }
+    
+    private void writeCustomer(WireWriter writer, CustomerContext customer) throws IOException {
+        int flags = (customer.getId() != null ? HAS_ID : 0)
+                | (customer.getTotalBuildings() != null ? HAS_FIRST : 0)
+                | (customer.getTotalDevices() != null ? HAS_SECOND : 0);
+        writer.writeByte(flags);
+        if (customer.getId() != null) {
+            writer.writeSignedVarLong(customer.getId());
+        }
+        writer.writeString(customer.getName());
+        writer.writeString(customer.getCustomerType());
+        if (customer.getTotalBuildings() != null) {
+            writer.writeSignedVarLong(customer.getTotalBuildings());
+        }
+        if (customer.getTotalDevices() != null) {
+            writer.writeSignedVarLong(customer.getTotalDevices());
+        }
+    }
+    
+    private CustomerContext readCustomer(WireReader reader) throws IOException {
+        int flags = reader.readByte();
+        CustomerContext customer = new CustomerContext();
+        if ((flags & HAS_ID) != 0) {
+            customer.setId(reader.readSignedVarLong());
+        }
+        customer.setName(reader.readString());
+        customer.setCustomerType(reader.readString());
+        if ((flags & HAS_FIRST) != 0) {
+            customer.setTotalBuildings((int) reader.readSignedVarLong());
+        }
+        if ((flags & HAS_SECOND) != 0) {
+            customer.setTotalDevices((int) reader.readSignedVarLong());
+        }
+        return customer;
+    }
+    
+    private void writeBuildings(WireWriter writer, List<BuildingContext> buildings) throws IOException {
+        if (buildings == null) {
+            writer.writeVarLong(0);
+            return;
+        }
+        writer.writeVarLong(buildings.size() + 1L);
+        long previousId = 0;
+        for (BuildingContext building : buildings) {
+            int flags = (building.getId() != null ? HAS_ID : 0)
+                    | (building.getSquareMeters() != null ? HAS_FIRST : 0)
+                    | (building.getDeviceCount() != null ? HAS_SECOND : 0);
+            writer.writeByte(flags);
+            if (building.getId() != null) {
+                writer.writeSignedVarLong(building.getId() - previousId);
+                previousId = building.getId();
+            }
+            writer.writeString(building.getBuildingType());
+            if (building.getSquareMeters() != null) {
+                writer.writeSignedVarLong(building.getSquareMeters());
+            }
+            if (building.getDeviceCount() != null) {
+                writer.writeSignedVarLong(building.getDeviceCount());
+            }
+        }
+    }
+    
+    private List<BuildingContext> readBuildings(WireReader reader) throws IOException {
+        int count = reader.readVarInt() - 1;
+        if (count < 0) {
+            return null;
+        }
+        List<BuildingContext> buildings = new ArrayList<>(Math.min(count, MAX_INITIAL_CAPACITY));
+        long previousId = 0;
+        for (int i = 0; i < count; i++) {
+            int flags = reader.readByte();
+            BuildingContext building = new BuildingContext();
+            if ((flags & HAS_ID) != 0) {
+                previousId += reader.readSignedVarLong();
+                building.setId(previousId);
+            }
+            building.setBuildingType(reader.readString());
+            if ((flags & HAS_FIRST) != 0) {
+                building.setSquareMeters((int) reader.readSignedVarLong());
+            }
+            if ((flags & HAS_SECOND) != 0) {
+                building.setDeviceCount((int) reader.readSignedVarLong());
+            }
+            buildings.add(building);
+        }
+        return buildings;
+    }
+    
+    private void writeDevices(WireWriter writer, List<DeviceContext> devices) throws IOException {
+        if (devices == null) {
+            writer.writeVarLong(0);
+            return;
+        }
+        writer.writeVarLong(devices.size() + 1L);
+        long previousId = 0;
+        for (DeviceContext device : devices) {
+            int flags = (device.getId() != null ? HAS_ID : 0)
+                    | (device.getPowerConsumption() != null ? HAS_FIRST : 0);
+            writer.writeByte(flags);
+            if (device.getId() != null) {
+                writer.writeSignedVarLong(device.getId() - previousId);
+                previousId = device.getId();
+            }
+            writer.writeString(device.getDeviceType());
+            writer.writeString(device.getManufacturer());
+            writer.writeString(device.getModelNumber());
+            writer.writeString(device.getStatus());
+            if (device.getPowerConsumption() != null) {
+                writer.writeSignedVarLong(device.getPowerConsumption());
+            }
+        }
+    }
+    
+    private List<DeviceContext> readDevices(WireReader reader) throws IOException {
+        int count = reader.readVarInt() - 1;
+        if (count < 0) {
+            return null;
+        }
+        List<DeviceContext> devices = new ArrayList<>(Math.min(count, MAX_INITIAL_CAPACITY));
+        long previousId = 0;
+        for (int i = 0; i < count; i++) {
+            int flags = reader.readByte();
+            DeviceContext device = new DeviceContext();
+            if ((flags & HAS_ID) != 0) {
+                previousId += reader.readSignedVarLong();
+                device.setId(previousId);
+            }
+            device.setDeviceType(reader.readString());
+            device.setManufacturer(reader.readString());
+            device.setModelNumber(reader.readString());
+            device.setStatus(reader.readString());
+            if ((flags & HAS_FIRST) != 0) {
+                device.setPowerConsumption((int) reader.readSignedVarLong());
+            }
+            devices.add(device);
+        }
+        return devices;
+    }
+    
+    private void writeDeviceSummaries(WireWriter writer, List<DeviceTypeSummary> summaries) throws IOException {
+        writer.writeVarLong(summaries.size() + 1L);
+        for (DeviceTypeSummary summary : summaries) {
+            int flags = (summary.getDeviceCount() != null ? HAS_FIRST : 0)
+                    | (summary.getPoweredDeviceCount() != null ? HAS_SECOND : 0)
+                    | (summary.getTotalPowerConsumption() != null ? HAS_THIRD : 0)
+                    | (summary.getMinPowerConsumption() != null ? HAS_FOURTH : 0)
+                    | (summary.getMaxPowerConsumption() != null ? HAS_FIFTH : 0)
+                    | (summary.getStatusCounts() != null ? HAS_SIXTH : 0);
+            writer.writeByte(flags);
+            writer.writeString(summary.getDeviceType());
+            if (summary.getDeviceCount() != null) {
+                writer.writeSignedVarLong(summary.getDeviceCount());
+            }
+            if (summary.getPoweredDeviceCount() != null) {
+                writer.writeSignedVarLong(summary.getPoweredDeviceCount());
+            }
+            if (summary.getTotalPowerConsumption() != null) {
+                writer.writeSignedVarLong(summary.getTotalPowerConsumption());
+            }
+            if (summary.getMinPowerConsumption() != null) {
+                writer.writeSignedVarLong(summary.getMinPowerConsumption());
+            }
+            if (summary.getMaxPowerConsumption() != null) {
+                writer.writeSignedVarLong(summary.getMaxPowerConsumption());
+            }
+            if (summary.getStatusCounts() != null) {
+                writer.writeVarLong(summary.getStatusCounts().size());
+                for (Map.Entry<String, Integer> statusCount : summary.getStatusCounts().entrySet()) {
+                    writer.writeString(statusCount.getKey());
+                    writer.writeSignedVarLong(statusCount.getValue());
+                }
+            }
+        }
+    }
+    
+    private List<DeviceTypeSummary> readDeviceSummaries(WireReader reader) throws IOException {
+        int count = reader.readVarInt() - 1;
+        if (count < 0) {
+            return null;
+        }
+        List<DeviceTypeSummary> summaries = new ArrayList<>(Math.min(count, MAX_INITIAL_CAPACITY));
+        for (int i = 0; i < count; i++) {
+            int flags = reader.readByte();
+            DeviceTypeSummary summary = new DeviceTypeSummary();
+            summary.setDeviceType(reader.readString());
+            if ((flags & HAS_FIRST) != 0) {
+                summary.setDeviceCount((int) reader.readSignedVarLong());
+            }
+            if ((flags & HAS_SECOND) != 0) {
+                summary.setPoweredDeviceCount((int) reader.readSignedVarLong());
+            }
+            if ((flags & HAS_THIRD) != 0) {
+                summary.setTotalPowerConsumption(reader.readSignedVarLong());
+            }
+            if ((flags & HAS_FOURTH) != 0) {
+                summary.setMinPowerConsumption((int) reader.readSignedVarLong());
+            }
+            if ((flags & HAS_FIFTH) != 0) {
+                summary.setMaxPowerConsumption((int) reader.readSignedVarLong());
+            }
+            if ((flags & HAS_SIXTH) != 0) {
+                int statuses = reader.readVarInt();
+                Map<String, Integer> statusCounts = new LinkedHashMap<>();
+                for (int j = 0; j < statuses; j++) {
+                    String status = reader.readString();
+                    statusCounts.put(status, (int) reader.readSignedVarLong());
+                }
+                summary.setStatusCounts(statusCounts);
+            }
+            summaries.add(summary);
+        }
+        return summaries;
+    }
+    
+    private int estimateSize(RecommendationRequest request) {
+        int devices = request.getDevices() != null ? request.getDevices().size() : 0;
+        int buildings = request.getBuildings() != null ? request.getBuildings().size() : 0;
+        int summaries = request.getDeviceSummaries() != null ? request.getDeviceSummaries().size() : 0;
+        return 64 + devices * 12 + buildings * 8 + summaries * 32;
+    }
+}
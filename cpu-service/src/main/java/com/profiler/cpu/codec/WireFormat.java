@@ -0,0 +1,24 @@
+package com.profiler.cpu.codec;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Constants of the compact binary format used between io-service and cpu-service
+ */
+public final class WireFormat {
+    
+    public static final String MEDIA_TYPE_VALUE = "application/x-profiler-recommendation";
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(MEDIA_TYPE_VALUE);
+    
+    static final int MAGIC_0 = 'P';
+    static final int MAGIC_1 = 'R';
+    static final int VERSION_DEVICES_ONLY = 1;
+    static final int VERSION = 2;
+    
+    static final long STRING_NULL = 0;
+    static final long STRING_LITERAL = 1;
+    static final long STRING_FIRST_REFERENCE = 2;
+    
+    private WireFormat() {
+    }
+}
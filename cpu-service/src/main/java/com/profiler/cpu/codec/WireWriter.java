@@ -0,0 +1,62 @@
+package com.profiler.cpu.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Low-level writer for the binary wire format: LEB128 varints, zigzag signed
+ * values and strings dictionary-encoded inline (first occurrence carries the
+ * literal, later occurrences only a reference), so output can be streamed.
+ */
+public class WireWriter {
+    
+    private final OutputStream out;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    
+    public WireWriter(OutputStream out) {
+        this.out = out;
+    }
+    
+    public void writeByte(int value) throws IOException {
+        out.write(value);
+    }
+    
+    public void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+    
+    public void writeSignedVarLong(long value) throws IOException {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+    
+    /**
+     * Writes a string reference: 0 = null, 1 = new literal follows, n >= 2 = dictionary entry n - 2
+     */
+    public void writeString(String value) throws IOException {
+        if (value == null) {
+            writeVarLong(WireFormat.STRING_NULL);
+            return;
+        }
+        Integer index = dictionary.get(value);
+        if (index != null) {
+            writeVarLong(WireFormat.STRING_FIRST_REFERENCE + index);
+            return;
+        }
+        dictionary.put(value, dictionary.size());
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(WireFormat.STRING_LITERAL);
+        writeVarLong(bytes.length);
+        out.write(bytes);
+    }
+    
+    public void flush() throws IOException {
+        out.flush();
+    }
+}
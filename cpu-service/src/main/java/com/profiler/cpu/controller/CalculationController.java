@@ -3,11 +3,16 @@ package com.profiler.cpu.controller;
 import com.profiler.cpu.model.RecommendationRequest;
 import com.profiler.cpu.model.RecommendationResponse;
 import com.profiler.cpu.service.RecommendationCalculatorService;
+import com.profiler.cpu.util.Deadline;
+import com.profiler.cpu.util.DeadlineExceededException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 /**
  * Level 1: REST Controller
  * Entry point for calculation requests
@@ -25,14 +30,38 @@ public class CalculationController {
     }
     
     @PostMapping("/calculate")
-    public ResponseEntity<RecommendationResponse> calculate(@RequestBody RecommendationRequest request) {
+    public ResponseEntity<RecommendationResponse> calculate(@RequestBody RecommendationRequest request,
+                                                            @RequestHeader(value = Deadline.HEADER, required = false) Long budgetMs) {
         logger.info("Received calculation request for customer {}", request.getCustomerId());
         
-        RecommendationResponse response = calculatorService.calculate(request);
+        RecommendationResponse response = calculatorService.calculate(request, deadline(budgetMs));
         
         return ResponseEntity.ok(response);
     }
     
+    @PostMapping("/calculate/batch")
+    public ResponseEntity<List<RecommendationResponse>> calculateBatch(@RequestBody List<RecommendationRequest> requests,
+                                                                       @RequestHeader(value = Deadline.HEADER, required = false) Long budgetMs) {
+        logger.info("Received batch calculation request for {} customers", requests.size());
+        
+        List<RecommendationResponse> responses = calculatorService.calculateBatch(requests, deadline(budgetMs));
+        
+        return ResponseEntity.ok(responses);
+    }
+    
+    /**
+     * The caller has given up by now, so there is no body worth sending
+     */
+    @ExceptionHandler(DeadlineExceededException.class)
+    public ResponseEntity<Void> deadlineExceeded(DeadlineExceededException e) {
+        logger.info("Abandoned calculation: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build();
+    }
+    
+    private static Deadline deadline(Long budgetMs) {
+        return budgetMs != null ? Deadline.afterMillis(budgetMs) : null;
+    }
+    
     @GetMapping("/health")
     public ResponseEntity<String> health() {
         return ResponseEntity.ok("CPU Service is healthy");
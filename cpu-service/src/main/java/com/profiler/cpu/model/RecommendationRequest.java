@@ -14,6 +14,7 @@ import java.util.List;
 public class RecommendationRequest {
     private Long customerId;
     private List<DeviceContext> devices;
+    private List<DeviceTypeSummary> deviceSummaries;
     private List<BuildingContext> buildings;
     private CustomerContext customer;
 }
@@ -2,22 +2,34 @@ package com.profiler.cpu.service;
 
 import com.profiler.cpu.model.BuildingContext;
 import com.profiler.cpu.model.DeviceContext;
+import com.profiler.cpu.model.DeviceTypeSummary;
+import com.profiler.cpu.util.Deadline;
 import com.profiler.cpu.util.MathUtils;
 import io.micrometer.core.annotation.Timed;
+import io.opentelemetry.context.Context;
 import io.opentelemetry.instrumentation.annotations.WithSpan;
 import io.opentelemetry.instrumentation.annotations.SpanAttribute;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.Collectors;
 
 /**
  * Level 4: Compatibility Analyzer
- * Analyzes device compatibility with building requirements
+ * Analyzes device compatibility with building requirements.
+ * In parallel mode, customers with many devices have their device-type groups scored
+ * concurrently on the scoring ForkJoinPool, one task per group; every group's scores keep
+ * device order, so results equal the sequential ones.
  */
 @Service
 public class CompatibilityAnalyzerService {
@@ -26,11 +38,20 @@ public class CompatibilityAnalyzerService {
     
     private final ScoreAggregatorService scoreAggregatorService;
     private final MathUtils mathUtils;
+    private final ForkJoinPool scoringPool;
+    private final boolean parallel;
+    private final int parallelMinDevices;
     
     public CompatibilityAnalyzerService(ScoreAggregatorService scoreAggregatorService,
-                                       MathUtils mathUtils) {
+                                       MathUtils mathUtils,
+                                       @Qualifier("scoringForkJoinPool") ForkJoinPool scoringPool,
+                                       @Value("${scoring.parallel.enabled:false}") boolean parallel,
+                                       @Value("${scoring.parallel.min-devices:2000}") int parallelMinDevices) {
         this.scoreAggregatorService = scoreAggregatorService;
         this.mathUtils = mathUtils;
+        this.scoringPool = scoringPool;
+        this.parallel = parallel;
+        this.parallelMinDevices = parallelMinDevices;
     }
     
     @WithSpan("CompatibilityAnalyzerService.analyzeCompatibility")
@@ -44,9 +65,15 @@ public class CompatibilityAnalyzerService {
         // Group devices by type
         Map<String, List<DeviceContext>> devicesByType = devices.stream()
                 .collect(Collectors.groupingBy(DeviceContext::getDeviceType));
-
+        
         logger.info("Stacktrace here", new Exception());
-
+        
+        ScoringContext scoringContext = new ScoringContext(buildings, customerType);
+        
+        if (parallel && devices.size() >= parallelMinDevices) {
+            return analyzeGroupsInParallel(devicesByType, scoringContext);
+        }
+        
         Map<String, Double> compatibilityScores = new java.util.HashMap<>();
         long totalCalcTime = System.nanoTime();
         for (Map.Entry<String, List<DeviceContext>> entry : devicesByType.entrySet()) {
@@ -57,54 +84,236 @@ public class CompatibilityAnalyzerService {
             int fibResult = (int) mathUtils.fibonacci(Math.min(20, typeDevices.size()));
             
             // Calculate individual scores
-            List<Double> scores = new ArrayList<>();
-            for (DeviceContext device : typeDevices) {
+            double[] scores = new double[typeDevices.size()];
+            for (int i = 0; i < typeDevices.size(); i++) {
+                if ((i & 255) == 0) {
+                    Deadline.check();
+                }
+                DeviceContext device = typeDevices.get(i);
                 long calcStart = System.nanoTime();
-                double score = calculateDeviceScore(device, buildings, customerType);
+                double score = scoringContext.score(device.getPowerConsumption());
                 totalCalcTime += System.nanoTime() - calcStart;
-                scores.add(score);
+                scores[i] = score;
             }
             
+            compatibilityScores.put(deviceType, aggregateGroup(deviceType, scores));
+        }
+        
+        logger.debug("Compatibility analysis took {} ms", totalCalcTime / 1000000.0);
+        
+        logger.debug("Calculated compatibility scores for {} device types", compatibilityScores.size());
+        return compatibilityScores;
+    }
+    
+    private double aggregateGroup(String deviceType, double[] scores) {
+        // CPU work: Prime number check
+        boolean isPrime = mathUtils.isPrime(scores.length);
+        double primeBonus = isPrime ? 1.1 : 1.0;
+        
+        // Aggregate scores (calls level 5)
+        double aggregatedScore = scoreAggregatorService.aggregateScores(
+                scores,
+                deviceType,
+                scores.length
+        );
+        
+        return aggregatedScore * primeBonus;
+    }
+    
+    /**
+     * One task per device-type group; the request's trace context and deadline are carried
+     * into the pool. Each task scores with its own memo, so the distinct power values are
+     * computed in the pool, at the cost of computing a value again in every group it occurs in.
+     * A single group is not split: its scoring is all memo lookups once the distinct values
+     * are known, so only the groups run in parallel.
+     */
+    private Map<String, Double> analyzeGroupsInParallel(Map<String, List<DeviceContext>> devicesByType,
+                                                        ScoringContext scoringContext) {
+        Deadline deadline = Deadline.current();
+        Context traceContext = Context.current();
+        List<String> deviceTypes = new ArrayList<>(devicesByType.keySet());
+        List<ForkJoinTask<Double>> groups = new ArrayList<>(deviceTypes.size());
+        for (String deviceType : deviceTypes) {
+            List<DeviceContext> typeDevices = devicesByType.get(deviceType);
+            groups.add(scoringPool.submit(traceContext.wrap(() -> Deadline.callWith(deadline,
+                    () -> scoreGroup(deviceType, typeDevices, scoringContext.withOwnMemo())))));
+        }
+        
+        Map<String, Double> compatibilityScores = new HashMap<>();
+        for (int i = 0; i < deviceTypes.size(); i++) {
+            compatibilityScores.put(deviceTypes.get(i), groups.get(i).join());
+        }
+        
+        logger.debug("Calculated compatibility scores for {} device types in parallel", compatibilityScores.size());
+        return compatibilityScores;
+    }
+    
+    private double scoreGroup(String deviceType, List<DeviceContext> typeDevices, ScoringContext scoringContext) {
+        // CPU work: Calculate fibonacci for device count
+        mathUtils.fibonacci(Math.min(20, typeDevices.size()));
+        
+        double[] scores = new double[typeDevices.size()];
+        for (int i = 0; i < scores.length; i++) {
+            if ((i & 255) == 0) {
+                Deadline.check();
+            }
+            scores[i] = scoringContext.score(typeDevices.get(i).getPowerConsumption());
+        }
+        
+        return aggregateGroup(deviceType, scores);
+    }
+    
+    /**
+     * Compatibility from per-type summaries. The device score is linear in power
+     * consumption, so the mean score follows from the power total; the min/max power
+     * tell whether the 100 cap applies to none or all of the devices, in which case
+     * the result equals the per-device calculation. Otherwise the capped mean is used.
+     */
+    @WithSpan("CompatibilityAnalyzerService.analyzeCompatibilityFromSummaries")
+    public Map<String, Double> analyzeCompatibilityFromSummaries(List<DeviceTypeSummary> summaries,
+                                                                 List<BuildingContext> buildings,
+                                                                 @SpanAttribute("customerType") String customerType) {
+        logger.debug("Analyzing compatibility for {} device types across {} buildings",
+                    summaries.size(), buildings.size());
+        
+        double buildingScore = 0.0;
+        for (BuildingContext building : buildings) {
+            if (building.getSquareMeters() != null) {
+                buildingScore += building.getSquareMeters() / 100.0;
+            }
+        }
+        double multiplier = "LARGE".equals(customerType) ? 1.2 : 1.0;
+        
+        Map<String, Double> compatibilityScores = new java.util.HashMap<>();
+        for (DeviceTypeSummary summary : summaries) {
+            Deadline.check();
+            int deviceCount = summary.getDeviceCount();
+            if (deviceCount == 0) {
+                continue;
+            }
+            
+            // CPU work: Calculate fibonacci for device count
+            mathUtils.fibonacci(Math.min(20, deviceCount));
+            
+            double meanScore = calculateMeanDeviceScore(summary, buildingScore, multiplier);
+            
             // CPU work: Prime number check
-            boolean isPrime = mathUtils.isPrime(typeDevices.size());
+            boolean isPrime = mathUtils.isPrime(deviceCount);
             double primeBonus = isPrime ? 1.1 : 1.0;
             
             // Aggregate scores (calls level 5)
-            double aggregatedScore = scoreAggregatorService.aggregateScores(
-                    scores,
-                    deviceType,
-                    typeDevices.size()
+            double aggregatedScore = scoreAggregatorService.aggregateMeanScore(
+                    meanScore,
+                    summary.getDeviceType(),
+                    deviceCount
             );
             
-            compatibilityScores.put(deviceType, aggregatedScore * primeBonus);
+            compatibilityScores.put(summary.getDeviceType(), aggregatedScore * primeBonus);
         }
-
-        logger.debug("Compatibility analysis took {} ms", totalCalcTime / 1000000.0);
         
         logger.debug("Calculated compatibility scores for {} device types", compatibilityScores.size());
         return compatibilityScores;
     }
-
-    private double calculateDeviceScore(DeviceContext device, List<BuildingContext> buildings, String customerType) {
-        double score = 50.0; // Base score
+    
+    private double calculateMeanDeviceScore(DeviceTypeSummary summary, double buildingScore, double multiplier) {
+        int deviceCount = summary.getDeviceCount();
+        int poweredCount = summary.getPoweredDeviceCount() != null ? summary.getPoweredDeviceCount() : 0;
+        long totalPower = summary.getTotalPowerConsumption() != null ? summary.getTotalPowerConsumption() : 0;
+        
+        // Sum of (100 - power) / 10 over powered devices
+        double powerScoreSum = (100.0 * poweredCount - totalPower) / 10.0;
+        double meanScore = (50.0 + buildingScore + powerScoreSum / deviceCount) * multiplier;
         
-        // Factor in power consumption
-        if (device.getPowerConsumption() != null) {
-            score += (100 - device.getPowerConsumption()) / 10.0;
+        if (poweredCount > 0 && (summary.getMinPowerConsumption() == null || summary.getMaxPowerConsumption() == null)) {
+            return Math.min(100.0, meanScore);
         }
         
-        // Factor in building compatibility
-        for (BuildingContext building : buildings) {
-            if (building.getSquareMeters() != null) {
-                score += building.getSquareMeters() / 100.0;
+        // Extremes of the power term across the devices of this type
+        double lowestPowerScore = poweredCount > 0 ? (100 - summary.getMaxPowerConsumption()) / 10.0 : 0.0;
+        double highestPowerScore = poweredCount > 0 ? (100 - summary.getMinPowerConsumption()) / 10.0 : 0.0;
+        if (poweredCount < deviceCount) {
+            lowestPowerScore = Math.min(lowestPowerScore, 0.0);
+            highestPowerScore = Math.max(highestPowerScore, 0.0);
+        }
+        
+        if ((50.0 + buildingScore + lowestPowerScore) * multiplier >= 100.0) {
+            return 100.0;
+        }
+        if ((50.0 + buildingScore + highestPowerScore) * multiplier <= 100.0) {
+            return meanScore;
+        }
+        return Math.min(100.0, meanScore);
+    }
+    
+    /**
+     * Per-request invariants of the device score. A device enters its score only through
+     * its power consumption, so the score is computed once per distinct power value, with
+     * the same operations in the same order as a per-device calculation, and reused; the
+     * building loop then runs per distinct value instead of per device and results stay
+     * bit-identical. Building terms are non-negative in practice, in which case the loop
+     * stops as soon as the score is certain to hit the 100 cap. The memo is not thread-safe;
+     * concurrent tasks each score through {@link #withOwnMemo}.
+     */
+    static final class ScoringContext {
+        
+        private final double[] buildingTerms;
+        private final boolean termsNonNegative;
+        private final boolean largeCustomer;
+        private final Map<Integer, Double> scoresByPower = new HashMap<>();
+        
+        ScoringContext(List<BuildingContext> buildings, String customerType) {
+            this.buildingTerms = buildings.stream()
+                    .filter(building -> building.getSquareMeters() != null)
+                    .mapToDouble(building -> building.getSquareMeters() / 100.0)
+                    .toArray();
+            this.termsNonNegative = Arrays.stream(buildingTerms).allMatch(term -> term >= 0.0);
+            this.largeCustomer = "LARGE".equals(customerType);
+        }
+        
+        private ScoringContext(ScoringContext invariants) {
+            this.buildingTerms = invariants.buildingTerms;
+            this.termsNonNegative = invariants.termsNonNegative;
+            this.largeCustomer = invariants.largeCustomer;
+        }
+        
+        /**
+         * The same invariants with an empty memo, for use by one task
+         */
+        ScoringContext withOwnMemo() {
+            return new ScoringContext(this);
+        }
+        
+        double score(Integer powerConsumption) {
+            Double score = scoresByPower.get(powerConsumption);
+            if (score == null) {
+                score = calculateDeviceScore(powerConsumption);
+                scoresByPower.put(powerConsumption, score);
             }
+            return score;
         }
         
-        // Customer type multiplier
-        if ("LARGE".equals(customerType)) {
-            score *= 1.2;
+        private double calculateDeviceScore(Integer powerConsumption) {
+            double score = 50.0; // Base score
+            
+            // Factor in power consumption
+            if (powerConsumption != null) {
+                score += (100 - powerConsumption) / 10.0;
+            }
+            
+            // Factor in building compatibility
+            for (double buildingTerm : buildingTerms) {
+                if (termsNonNegative && withMultiplier(score) >= 100.0) {
+                    return 100.0;
+                }
+                score += buildingTerm;
+            }
+            
+            return Math.min(100.0, withMultiplier(score));
         }
         
-        return Math.min(100.0, score);
+        // Customer type multiplier
+        private double withMultiplier(double score) {
+            return largeCustomer ? score * 1.2 : score;
+        }
     }
 }
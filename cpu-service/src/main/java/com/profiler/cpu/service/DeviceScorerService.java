@@ -3,6 +3,8 @@ package com.profiler.cpu.service;
 import com.profiler.cpu.model.BuildingContext;
 import com.profiler.cpu.model.DeviceContext;
 import com.profiler.cpu.model.DeviceRecommendation;
+import com.profiler.cpu.model.DeviceTypeSummary;
+import com.profiler.cpu.util.Deadline;
 import com.profiler.cpu.util.MathUtils;
 import io.opentelemetry.instrumentation.annotations.WithSpan;
 import io.opentelemetry.instrumentation.annotations.SpanAttribute;
@@ -48,10 +50,32 @@ public class DeviceScorerService {
                 customerType
         );
         
+        return recommend(compatibilityScores);
+    }
+    
+    @WithSpan("DeviceScorerService.scoreDeviceSummaries")
+    public List<DeviceRecommendation> scoreDeviceSummaries(List<DeviceTypeSummary> summaries,
+                                                           List<BuildingContext> buildings,
+                                                           @SpanAttribute("customerType") String customerType) {
+        logger.debug("Scoring devices for {} device type summaries", summaries.size());
+        
+        // Get compatibility scores (calls level 4)
+        Map<String, Double> compatibilityScores = compatibilityAnalyzerService.analyzeCompatibilityFromSummaries(
+                summaries,
+                buildings,
+                customerType
+        );
+        
+        return recommend(compatibilityScores);
+    }
+    
+    private List<DeviceRecommendation> recommend(Map<String, Double> compatibilityScores) {
         List<DeviceRecommendation> recommendations = new ArrayList<>();
         
         // Generate recommendations for each device type
         for (String deviceType : DEVICE_TYPES) {
+            Deadline.check();
+            
             // CPU work: Calculate hash for device type
             long typeHash = mathUtils.calculateHash(deviceType, 500);
             
@@ -1,16 +1,26 @@
 package com.profiler.cpu.service;
 
 import com.profiler.cpu.model.*;
+import com.profiler.cpu.util.Deadline;
+import com.profiler.cpu.util.DeadlineExceededException;
 import com.profiler.cpu.util.MathUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.opentelemetry.instrumentation.annotations.WithSpan;
 import io.opentelemetry.instrumentation.annotations.SpanAttribute;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -24,6 +34,9 @@ public class RecommendationCalculatorService {
     
     private final DeviceScorerService deviceScorerService;
     private final MathUtils mathUtils;
+    private final ExecutorService batchExecutor;
+    private final Counter deadlineExceeded;
+    private final Counter wastedCpu;
     
     @Value("${calculation.min-duration-ms:50}")
     private int minDurationMs;
@@ -35,16 +48,50 @@ public class RecommendationCalculatorService {
     private int iterationsPerDevice;
     
     public RecommendationCalculatorService(DeviceScorerService deviceScorerService,
-                                          MathUtils mathUtils) {
+                                          MathUtils mathUtils,
+                                          @Qualifier("calculationBatchExecutor") ExecutorService batchExecutor,
+                                          MeterRegistry meterRegistry) {
         this.deviceScorerService = deviceScorerService;
         this.mathUtils = mathUtils;
+        this.batchExecutor = batchExecutor;
+        this.deadlineExceeded = Counter.builder("calculation.deadline.exceeded").register(meterRegistry);
+        this.wastedCpu = Counter.builder("calculation.deadline.wasted.cpu")
+                .description("CPU time all threads spent on calculations abandoned at their deadline")
+                .baseUnit("seconds")
+                .register(meterRegistry);
     }
     
+    /**
+     * Checks the request deadline (see {@link Deadline}) between steps and inside the
+     * scoring loops; a null deadline leaves the calculation unbounded
+     */
     @WithSpan("RecommendationCalculatorService.calculate")
-    public RecommendationResponse calculate(RecommendationRequest request) {
+    public RecommendationResponse calculate(RecommendationRequest request, Deadline deadline) {
+        return withDeadline(deadline, () -> {
+            Deadline.check();
+            return doCalculate(request);
+        });
+    }
+    
+    /**
+     * Runs the work under the deadline. When it is abandoned there, the CPU time that
+     * every thread spent on it up to that point, pool workers included, counts as wasted.
+     */
+    private <T> T withDeadline(Deadline deadline, Supplier<T> work) {
+        try {
+            return Deadline.callWith(deadline, work);
+        } catch (DeadlineExceededException e) {
+            deadlineExceeded.increment();
+            wastedCpu.increment(deadline.cpuNanos() / 1e9);
+            throw e;
+        }
+    }
+    
+    private RecommendationResponse doCalculate(RecommendationRequest request) {
+        int deviceCount = countDevices(request);
         logger.info("Starting calculation for customer {} with {} devices",
                    request.getCustomerId(),
-                   request.getDevices() != null ? request.getDevices().size() : 0);
+                   deviceCount);
         
         long startTime = System.currentTimeMillis();
         
@@ -52,11 +99,20 @@ public class RecommendationCalculatorService {
         performCpuIntensiveWork(request);
         
         // Score devices (calls level 3)
-        List<DeviceRecommendation> allRecommendations = deviceScorerService.scoreDevices(
-                request.getDevices(),
-                request.getBuildings(),
-                request.getCustomer().getCustomerType()
-        );
+        List<DeviceRecommendation> allRecommendations;
+        if (request.getDevices() == null && request.getDeviceSummaries() != null) {
+            allRecommendations = deviceScorerService.scoreDeviceSummaries(
+                    request.getDeviceSummaries(),
+                    request.getBuildings(),
+                    request.getCustomer().getCustomerType()
+            );
+        } else {
+            allRecommendations = deviceScorerService.scoreDevices(
+                    request.getDevices(),
+                    request.getBuildings(),
+                    request.getCustomer().getCustomerType()
+            );
+        }
         
         // Sort by score and take top 10
         List<DeviceRecommendation> topRecommendations = allRecommendations.stream()
@@ -79,22 +135,66 @@ public class RecommendationCalculatorService {
                 .recommendations(topRecommendations)
                 .calculationMethod("Advanced ML-based scoring algorithm")
                 .calculationTimeMs(calculationTime)
-                .totalDevicesAnalyzed(request.getDevices() != null ? request.getDevices().size() : 0)
+                .totalDevicesAnalyzed(deviceCount)
                 .build();
     }
     
+    /**
+     * Calculates many customers in parallel on the batch executor, all under one deadline.
+     * Responses are returned in request order.
+     */
+    @WithSpan("RecommendationCalculatorService.calculateBatch")
+    public List<RecommendationResponse> calculateBatch(List<RecommendationRequest> requests, Deadline deadline) {
+        return withDeadline(deadline, () -> doCalculateBatch(requests, deadline));
+    }
+    
+    private List<RecommendationResponse> doCalculateBatch(List<RecommendationRequest> requests, Deadline deadline) {
+        logger.info("Starting batch calculation for {} customers", requests.size());
+        
+        List<Future<RecommendationResponse>> futures = new ArrayList<>(requests.size());
+        for (RecommendationRequest request : requests) {
+            futures.add(batchExecutor.submit(() -> Deadline.callWith(deadline, () -> {
+                Deadline.check();
+                return doCalculate(request);
+            })));
+        }
+        
+        List<RecommendationResponse> responses = new ArrayList<>(requests.size());
+        try {
+            for (Future<RecommendationResponse> future : futures) {
+                responses.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted during batch calculation", e);
+        }
+        
+        return responses;
+    }
+    
     @WithSpan("RecommendationCalculatorService.performCpuIntensiveWork")
     private void performCpuIntensiveWork(RecommendationRequest request) {
-        int deviceCount = request.getDevices() != null ? request.getDevices().size() : 1;
+        int deviceCount = Math.max(countDevices(request), 1);
         
         // CPU work: Calculate fibonacci numbers
         for (int i = 0; i < Math.min(deviceCount, 100); i++) {
             mathUtils.fibonacci(20);
         }
+        Deadline.check();
         
         // CPU work: Prime number checks
         long startNumber = System.currentTimeMillis() % 10000;
         for (int i = 0; i < deviceCount * 10; i++) {
+            if ((i & 1023) == 0) {
+                Deadline.check();
+            }
             mathUtils.isPrime(startNumber + i);
         }
         
@@ -104,12 +204,25 @@ public class RecommendationCalculatorService {
         }
     }
     
+    private int countDevices(RecommendationRequest request) {
+        if (request.getDevices() != null) {
+            return request.getDevices().size();
+        }
+        if (request.getDeviceSummaries() != null) {
+            return request.getDeviceSummaries().stream()
+                    .mapToInt(summary -> summary.getDeviceCount() != null ? summary.getDeviceCount() : 0)
+                    .sum();
+        }
+        return 0;
+    }
+    
     @WithSpan("RecommendationCalculatorService.performAdditionalCpuWork")
     private void performAdditionalCpuWork(@SpanAttribute("additionalMs") long additionalMs) {
         long targetTime = System.currentTimeMillis() + additionalMs;
         int iterations = 0;
         
         while (System.currentTimeMillis() < targetTime) {
+            Deadline.check();
             mathUtils.fibonacci(15);
             mathUtils.isPrime(iterations + 1000);
             iterations++;
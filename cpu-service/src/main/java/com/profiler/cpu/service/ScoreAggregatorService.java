@@ -8,9 +8,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Level 5: Score Aggregator
  * Aggregates individual scores using CPU-intensive operations
@@ -28,29 +25,20 @@ public class ScoreAggregatorService {
         this.scoreCalculator = scoreCalculator;
     }
     
+    /**
+     * Aggregates the individual scores of one device type; {@code scores} is reordered
+     */
     @WithSpan("ScoreAggregatorService.aggregateScores")
-    public double aggregateScores(List<Double> scores, 
+    public double aggregateScores(double[] scores, 
                                  @SpanAttribute("deviceType") String deviceType, 
                                  @SpanAttribute("deviceCount") int deviceCount) {
-        logger.debug("Aggregating {} scores for device type {}", scores.size(), deviceType);
-        
-        // CPU work: Calculate hash for device type
-        long hash = mathUtils.calculateHash(deviceType, 1000);
-        
-        // CPU work: Matrix multiplication
-        int matrixSize = Math.min(10, scores.size());
-        double[][] matrix1 = createMatrix(matrixSize, hash);
-        double[][] matrix2 = createMatrix(matrixSize, hash + 1);
-        double[][] result = mathUtils.multiplyMatrices(matrix1, matrix2);
+        logger.debug("Aggregating {} scores for device type {}", scores.length, deviceType);
         
-        // CPU work: Calculate statistics
-        double[] stats = scoreCalculator.calculateStatistics(scores);
+        long hash = performAggregationWork(deviceType, scores.length);
         
-        // Combine results
-        double aggregatedScore = scoreCalculator.calculateWeightedScore(
-                scores,
-                createWeights(scores.size())
-        );
+        // CPU work: Statistics and the equally weighted score in one pass
+        double[] summary = scoreCalculator.summarize(scores);
+        double aggregatedScore = summary[ScoreCalculator.WEIGHTED_SCORE];
         
         // Normalize based on device count
         double normalizedScore = scoreCalculator.normalizeScore(
@@ -59,25 +47,48 @@ public class ScoreAggregatorService {
                 100 * deviceCount
         );
         
-        logger.debug("Aggregated score: {} (hash: {}, mean: {})", normalizedScore, hash, stats[0]);
+        logger.debug("Aggregated score: {} (hash: {}, mean: {})", normalizedScore, hash, summary[ScoreCalculator.MEAN]);
         return normalizedScore;
     }
     
-    private double[][] createMatrix(int size, long seed) {
-        double[][] matrix = new double[size][size];
-        for (int i = 0; i < size; i++) {
-            for (int j = 0; j < size; j++) {
-                matrix[i][j] = ((seed + i * size + j) % 100) / 10.0;
-            }
-        }
-        return matrix;
+    /**
+     * Same aggregation as {@link #aggregateScores} when only the mean of the
+     * individual scores is known (device type summaries)
+     */
+    @WithSpan("ScoreAggregatorService.aggregateMeanScore")
+    public double aggregateMeanScore(double meanScore,
+                                     @SpanAttribute("deviceType") String deviceType,
+                                     @SpanAttribute("deviceCount") int deviceCount) {
+        long hash = performAggregationWork(deviceType, deviceCount);
+        
+        double normalizedScore = scoreCalculator.normalizeScore(
+                meanScore * deviceCount,
+                0,
+                100 * deviceCount
+        );
+        
+        logger.debug("Aggregated score: {} (hash: {}, mean: {})", normalizedScore, hash, meanScore);
+        return normalizedScore;
+    }
+    
+    private long performAggregationWork(String deviceType, int scoreCount) {
+        // CPU work: Calculate hash for device type
+        long hash = mathUtils.calculateHash(deviceType, 1000);
+        
+        // CPU work: Matrix multiplication
+        int matrixSize = Math.min(10, scoreCount);
+        double[] matrix1 = createMatrix(matrixSize, hash);
+        double[] matrix2 = createMatrix(matrixSize, hash + 1);
+        mathUtils.multiplyMatrices(matrix1, matrix2, matrixSize);
+        
+        return hash;
     }
     
-    private List<Double> createWeights(int size) {
-        List<Double> weights = new ArrayList<>();
-        for (int i = 0; i < size; i++) {
-            weights.add(1.0 / size);
+    private double[] createMatrix(int size, long seed) {
+        double[] matrix = new double[size * size];
+        for (int i = 0; i < size * size; i++) {
+            matrix[i] = ((seed + i) % 100) / 10.0;
         }
-        return weights;
+        return matrix;
     }
 }
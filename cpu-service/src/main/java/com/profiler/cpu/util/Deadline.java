@@ -0,0 +1,100 @@
+package com.profiler.cpu.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * End-to-end time budget of a request. It travels between services as the remaining
+ * milliseconds in {@link #HEADER}, so clock skew between hosts does not matter, and is
+ * bound to the handling thread for the duration of the request.
+ * Every thread that runs work under the deadline adds its CPU time to it, so the
+ * CPU cost of a request includes the pool workers that helped with it.
+ */
+public final class Deadline {
+    
+    public static final String HEADER = "X-Request-Budget-Ms";
+    
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    /**
+     * CPU time of the bindings that have ended on this thread, so an enclosing binding
+     * for another deadline does not count it twice
+     */
+    private static final ThreadLocal<long[]> NESTED_CPU = ThreadLocal.withInitial(() -> new long[1]);
+    
+    private final long expiresAtNanos;
+    private final LongAdder cpuNanos = new LongAdder();
+    
+    private Deadline(long expiresAtNanos) {
+        this.expiresAtNanos = expiresAtNanos;
+    }
+    
+    public static Deadline afterMillis(long budgetMs) {
+        return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMs));
+    }
+    
+    /**
+     * The deadline of the request handled by this thread, or null when it has none
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+    
+    /**
+     * Runs the work with the deadline bound to this thread and adds the thread's CPU time
+     * to the deadline; a null deadline runs it unbounded. Already bound, the work just runs.
+     */
+    public static <T> T callWith(Deadline deadline, Supplier<T> work) {
+        Deadline previous = CURRENT.get();
+        if (deadline == previous) {
+            return work.get();
+        }
+        CURRENT.set(deadline);
+        long[] nestedCpu = NESTED_CPU.get();
+        long nestedBefore = nestedCpu[0];
+        long cpuStart = THREADS.getCurrentThreadCpuTime();
+        try {
+            return work.get();
+        } finally {
+            long cpuEnd = THREADS.getCurrentThreadCpuTime();
+            long used = cpuStart >= 0 && cpuEnd >= 0 ? cpuEnd - cpuStart : 0;
+            if (deadline != null) {
+                deadline.cpuNanos.add(used - (nestedCpu[0] - nestedBefore));
+            }
+            nestedCpu[0] = nestedBefore + used;
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+    
+    /**
+     * Throws when the current thread's deadline has passed
+     */
+    public static void check() {
+        Deadline deadline = CURRENT.get();
+        if (deadline != null && deadline.isExpired()) {
+            throw new DeadlineExceededException("Request deadline exceeded");
+        }
+    }
+    
+    /**
+     * CPU time spent under this deadline by the bindings that have ended so far
+     */
+    public long cpuNanos() {
+        return cpuNanos.sum();
+    }
+    
+    public long remainingMillis() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiresAtNanos - System.nanoTime()));
+    }
+    
+    public boolean isExpired() {
+        return expiresAtNanos - System.nanoTime() <= 0;
+    }
+}
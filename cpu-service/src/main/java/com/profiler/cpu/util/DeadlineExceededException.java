@@ -0,0 +1,11 @@
+package com.profiler.cpu.util;
+
+/**
+ * Thrown when work is abandoned because the request's deadline has passed
+ */
+public class DeadlineExceededException extends RuntimeException {
+    
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
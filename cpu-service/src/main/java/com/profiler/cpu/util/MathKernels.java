@@ -0,0 +1,63 @@
+package com.profiler.cpu.util;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * Numeric kernels behind {@link MathUtils} and {@link ScoreCalculator}, picked by math.kernels.
+ * The scalar ones are the default and keep the original results bit for bit. The Vector API
+ * ones need a build with -PvectorKernels and a JVM started with --add-modules
+ * jdk.incubator.vector; their sums differ from scalar by up to about 1e-14 relative.
+ */
+public interface MathKernels {
+    
+    // Slots shared with ScoreCalculator#summarize, which has the moments written in place
+    int MEAN = ScoreCalculator.MEAN;
+    int VARIANCE = ScoreCalculator.VARIANCE;
+    int WEIGHTED_SCORE = ScoreCalculator.WEIGHTED_SCORE;
+    
+    String VECTOR_MODULE = "jdk.incubator.vector";
+    
+    String name();
+    
+    /**
+     * Product of two n x n matrices stored flat in row-major order
+     */
+    double[] multiply(double[] a, double[] b, int n);
+    
+    /**
+     * Writes the mean, the population variance and the score with every value weighted
+     * by {@code weight} into {@code moments}, indexed by the constants above
+     */
+    void moments(double[] values, double weight, double[] moments);
+    
+    /**
+     * @param mode scalar, vector, or auto for vector when it is available and scalar
+     *             otherwise; vector fails when the module or the class is not available
+     */
+    static MathKernels select(String mode) {
+        MathKernels kernels = "scalar".equals(mode) ? new ScalarMathKernels() : loadVector(mode);
+        LoggerFactory.getLogger(MathKernels.class).info("Using {} math kernels (mode {})", kernels.name(), mode);
+        return kernels;
+    }
+    
+    private static MathKernels loadVector(String mode) {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            if ("vector".equals(mode)) {
+                throw new IllegalStateException("Vector math kernels require --add-modules " + VECTOR_MODULE);
+            }
+            return new ScalarMathKernels();
+        }
+        try {
+            // Loaded by name so the scalar path never links against the incubator module
+            return (MathKernels) Class.forName(MathKernels.class.getPackageName() + ".VectorMathKernels")
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            if ("vector".equals(mode)) {
+                throw new IllegalStateException("Vector math kernels could not be loaded", e);
+            }
+            LoggerFactory.getLogger(MathKernels.class).warn("Vector math kernels could not be loaded: {}", e.toString());
+            return new ScalarMathKernels();
+        }
+    }
+}
@@ -1,16 +1,43 @@
 package com.profiler.cpu.util;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 /**
- * CPU-intensive mathematical operations
+ * CPU-intensive mathematical operations.
+ * With math.memo.enabled, the pure fibonacci and hash functions are memoised in
+ * bounded striped caches; their results are unchanged, only repeated work is skipped.
  */
 @Component
 public class MathUtils {
     
+    private final MathKernels kernels;
+    private final StripedMemoCache<Integer, Long> fibonacciMemo;
+    private final StripedMemoCache<HashKey, Long> hashMemo;
+    
+    public MathUtils(MathKernels kernels,
+                     MeterRegistry meterRegistry,
+                     @Value("${math.memo.enabled:false}") boolean memoEnabled,
+                     @Value("${math.memo.max-entries:1024}") int maxEntries,
+                     @Value("${math.memo.stripes:16}") int stripes) {
+        this.kernels = kernels;
+        this.fibonacciMemo = memoEnabled ? new StripedMemoCache<>(meterRegistry, "fibonacci", maxEntries, stripes) : null;
+        this.hashMemo = memoEnabled ? new StripedMemoCache<>(meterRegistry, "hash", maxEntries, stripes) : null;
+    }
+    
+    /**
+     * Perform matrix multiplication for CPU load; n x n matrices, flat in row-major order
+     */
+    public double[] multiplyMatrices(double[] a, double[] b, int n) {
+        return kernels.multiply(a, b, n);
+    }
+    
     /**
      * Perform matrix multiplication for CPU load
+     * @deprecated the naive triple loop over 2D arrays; use {@link #multiplyMatrices(double[], double[], int)}
      */
+    @Deprecated
     public double[][] multiplyMatrices(double[][] a, double[][] b) {
         int n = a.length;
         double[][] result = new double[n][n];
@@ -30,8 +57,15 @@ public class MathUtils {
      * Calculate fibonacci numbers recursively
      */
     public long fibonacci(int n) {
+        if (fibonacciMemo != null) {
+            return fibonacciMemo.get(n, MathUtils::computeFibonacci);
+        }
+        return computeFibonacci(n);
+    }
+    
+    private static long computeFibonacci(int n) {
         if (n <= 1) return n;
-        return fibonacci(n - 1) + fibonacci(n - 2);
+        return computeFibonacci(n - 1) + computeFibonacci(n - 2);
     }
     
     /**
@@ -54,6 +88,13 @@ public class MathUtils {
      * Calculate hash using custom algorithm
      */
     public long calculateHash(String input, int iterations) {
+        if (hashMemo != null) {
+            return hashMemo.get(new HashKey(input, iterations), key -> computeHash(key.input(), key.iterations()));
+        }
+        return computeHash(input, iterations);
+    }
+    
+    private static long computeHash(String input, int iterations) {
         long hash = 0;
         for (int iter = 0; iter < iterations; iter++) {
             for (char c : input.toCharArray()) {
@@ -63,4 +104,7 @@ public class MathUtils {
         }
         return hash;
     }
+    
+    private record HashKey(String input, int iterations) {
+    }
 }
@@ -0,0 +1,81 @@
+package com.profiler.cpu.util;
+
+/**
+ * Plain Java kernels; mean and weighted score equal those of the boxed methods
+ * on {@link ScoreCalculator} bit for bit
+ */
+public class ScalarMathKernels implements MathKernels {
+    
+    static final int BLOCK = 64;
+    
+    @Override
+    public String name() {
+        return "scalar";
+    }
+    
+    /**
+     * Blocked i-k-j multiplication: the inner loop walks rows of b and the result
+     * contiguously, and each block of b stays in cache while it is reused
+     */
+    @Override
+    public double[] multiply(double[] a, double[] b, int n) {
+        double[] result = new double[n * n];
+        for (int kk = 0; kk < n; kk += BLOCK) {
+            int kEnd = Math.min(kk + BLOCK, n);
+            for (int jj = 0; jj < n; jj += BLOCK) {
+                int jEnd = Math.min(jj + BLOCK, n);
+                for (int i = 0; i < n; i++) {
+                    int row = i * n;
+                    for (int k = kk; k < kEnd; k++) {
+                        double aik = a[row + k];
+                        int bRow = k * n;
+                        for (int j = jj; j < jEnd; j++) {
+                            result[row + j] += aik * b[bRow + j];
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * One pass; the sum and the weight total are compensated as DoubleStream computes them,
+     * the variance is accumulated with Welford's method
+     */
+    @Override
+    public void moments(double[] values, double weight, double[] moments) {
+        int n = values.length;
+        double sum = 0.0;
+        double sumCompensation = 0.0;
+        double totalWeight = 0.0;
+        double weightCompensation = 0.0;
+        double weightedSum = 0.0;
+        double runningMean = 0.0;
+        double squaredDeviations = 0.0;
+        
+        for (int i = 0; i < n; i++) {
+            double value = values[i];
+            
+            double correctedValue = value - sumCompensation;
+            double nextSum = sum + correctedValue;
+            sumCompensation = (nextSum - sum) - correctedValue;
+            sum = nextSum;
+            
+            double correctedWeight = weight - weightCompensation;
+            double nextTotalWeight = totalWeight + correctedWeight;
+            weightCompensation = (nextTotalWeight - totalWeight) - correctedWeight;
+            totalWeight = nextTotalWeight;
+            
+            weightedSum += value * weight;
+            
+            double delta = value - runningMean;
+            runningMean += delta / (i + 1);
+            squaredDeviations += delta * (value - runningMean);
+        }
+        
+        moments[MEAN] = (sum - sumCompensation) / n;
+        moments[VARIANCE] = squaredDeviations / n;
+        moments[WEIGHTED_SCORE] = weightedSum / (totalWeight - weightCompensation);
+    }
+}
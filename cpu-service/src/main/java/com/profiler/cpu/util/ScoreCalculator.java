@@ -11,6 +11,18 @@ import java.util.List;
 @Component
 public class ScoreCalculator {
     
+    public static final int MEAN = 0;
+    public static final int MEDIAN = 1;
+    public static final int STDDEV = 2;
+    public static final int VARIANCE = 3;
+    public static final int WEIGHTED_SCORE = 4;
+    
+    private final MathKernels kernels;
+    
+    public ScoreCalculator(MathKernels kernels) {
+        this.kernels = kernels;
+    }
+    
     public double calculateWeightedScore(List<Double> scores, List<Double> weights) {
         if (scores.size() != weights.size()) {
             throw new IllegalArgumentException("Scores and weights must have same size");
@@ -52,4 +64,82 @@ public class ScoreCalculator {
         
         return stats;
     }
+    
+    /**
+     * Mean, median, standard deviation, variance and the equally weighted score of the values,
+     * indexed by the constants above. The kernels compute the moments, then the median is
+     * selected in place, so {@code values} is reordered; nothing is allocated but the result.
+     * With the scalar kernels mean and weighted score equal those of the {@code List} methods
+     * with weights of 1/n.
+     */
+    public double[] summarize(double[] values) {
+        double[] summary = new double[5];
+        int n = values.length;
+        if (n == 0) {
+            summary[WEIGHTED_SCORE] = Double.NaN;
+            return summary;
+        }
+        
+        kernels.moments(values, 1.0 / n, summary);
+        summary[STDDEV] = Math.sqrt(summary[VARIANCE]);
+        summary[MEDIAN] = median(values);
+        return summary;
+    }
+    
+    /**
+     * Median by quickselect; after selecting the upper middle element everything left of it
+     * is smaller or equal, so for an even count the lower middle is the maximum of that part
+     */
+    private static double median(double[] values) {
+        int mid = values.length / 2;
+        double upper = select(values, mid);
+        if (values.length % 2 != 0) {
+            return upper;
+        }
+        double lower = values[0];
+        for (int i = 1; i < mid; i++) {
+            lower = Math.max(lower, values[i]);
+        }
+        return (lower + upper) / 2;
+    }
+    
+    private static double select(double[] values, int k) {
+        int left = 0;
+        int right = values.length - 1;
+        while (left < right) {
+            // Median of three as pivot keeps sorted and constant input linear
+            int middle = (left + right) >>> 1;
+            if (values[middle] < values[left]) swap(values, left, middle);
+            if (values[right] < values[left]) swap(values, left, right);
+            if (values[right] < values[middle]) swap(values, middle, right);
+            double pivot = values[middle];
+            
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (values[i] < pivot) i++;
+                while (values[j] > pivot) j--;
+                if (i <= j) {
+                    swap(values, i, j);
+                    i++;
+                    j--;
+                }
+            }
+            
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return values[k];
+            }
+        }
+        return values[k];
+    }
+    
+    private static void swap(double[] values, int i, int j) {
+        double value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
 }
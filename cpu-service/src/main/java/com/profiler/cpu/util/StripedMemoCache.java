@@ -0,0 +1,97 @@
+package com.profiler.cpu.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Bounded memo cache for pure functions. Keys are spread over a power-of-two number of
+ * stripes, each an LRU map guarded by its own monitor, so concurrent lookups of different
+ * keys rarely contend. Values are computed outside the lock; two threads missing the same
+ * key may both compute it, which is harmless for a pure function.
+ */
+public class StripedMemoCache<K, V> {
+    
+    private final Stripe<K, V>[] stripes;
+    private final int mask;
+    
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    
+    @SuppressWarnings("unchecked")
+    public StripedMemoCache(MeterRegistry meterRegistry, String function, int maxEntries, int stripeCount) {
+        int count = Integer.highestOneBit(Math.max(1, Math.min(stripeCount, maxEntries)));
+        int stripeCapacity = Math.max(1, maxEntries / count);
+        
+        this.hits = Counter.builder("math.memo.requests").tag("function", function).tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("math.memo.requests").tag("function", function).tag("result", "miss").register(meterRegistry);
+        this.evictions = Counter.builder("math.memo.evictions").tag("function", function).register(meterRegistry);
+        Gauge.builder("math.memo.size", this, StripedMemoCache::size).tag("function", function).register(meterRegistry);
+        
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe<>(stripeCapacity, evictions);
+        }
+        this.mask = count - 1;
+    }
+    
+    public V get(K key, Function<K, V> function) {
+        Stripe<K, V> stripe = stripeFor(key);
+        V value;
+        synchronized (stripe) {
+            value = stripe.get(key);
+        }
+        if (value != null) {
+            hits.increment();
+            return value;
+        }
+        
+        misses.increment();
+        value = function.apply(key);
+        synchronized (stripe) {
+            stripe.putIfAbsent(key, value);
+        }
+        return value;
+    }
+    
+    public int size() {
+        int size = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+    
+    private Stripe<K, V> stripeFor(K key) {
+        int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & mask];
+    }
+    
+    private static final class Stripe<K, V> extends LinkedHashMap<K, V> {
+        
+        private final int capacity;
+        private final Counter evictions;
+        
+        Stripe(int capacity, Counter evictions) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.evictions = evictions;
+        }
+        
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
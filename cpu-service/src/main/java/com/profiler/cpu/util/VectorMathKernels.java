@@ -0,0 +1,98 @@
+package com.profiler.cpu.util;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernels on the preferred double species of the platform. Reductions are done lane-wise,
+ * so sums can differ from the scalar kernels in the last bits.
+ * Only instantiated through {@link MathKernels#select}, when the module is available.
+ */
+public class VectorMathKernels implements MathKernels {
+    
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final int BLOCK = ScalarMathKernels.BLOCK;
+    
+    @Override
+    public String name() {
+        return "vector-" + SPECIES.vectorBitSize();
+    }
+    
+    /**
+     * Same blocking as the scalar kernel; a[i][k] is broadcast and multiplied into
+     * a row segment of b with fused multiply-add
+     */
+    @Override
+    public double[] multiply(double[] a, double[] b, int n) {
+        double[] result = new double[n * n];
+        for (int kk = 0; kk < n; kk += BLOCK) {
+            int kEnd = Math.min(kk + BLOCK, n);
+            for (int jj = 0; jj < n; jj += BLOCK) {
+                int jEnd = Math.min(jj + BLOCK, n);
+                int jVectorEnd = jj + SPECIES.loopBound(jEnd - jj);
+                for (int i = 0; i < n; i++) {
+                    int row = i * n;
+                    for (int k = kk; k < kEnd; k++) {
+                        double aik = a[row + k];
+                        DoubleVector broadcast = DoubleVector.broadcast(SPECIES, aik);
+                        int bRow = k * n;
+                        int j = jj;
+                        for (; j < jVectorEnd; j += SPECIES.length()) {
+                            DoubleVector partial = DoubleVector.fromArray(SPECIES, result, row + j);
+                            broadcast.fma(DoubleVector.fromArray(SPECIES, b, bRow + j), partial)
+                                    .intoArray(result, row + j);
+                        }
+                        for (; j < jEnd; j++) {
+                            result[row + j] += aik * b[bRow + j];
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Two passes: the sum and the weighted sum, then the squared deviations from the mean
+     */
+    @Override
+    public void moments(double[] values, double weight, double[] moments) {
+        int n = values.length;
+        int upperBound = SPECIES.loopBound(n);
+        DoubleVector weights = DoubleVector.broadcast(SPECIES, weight);
+        
+        DoubleVector sums = DoubleVector.zero(SPECIES);
+        DoubleVector weightedSums = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (; i < upperBound; i += SPECIES.length()) {
+            DoubleVector vector = DoubleVector.fromArray(SPECIES, values, i);
+            sums = sums.add(vector);
+            weightedSums = vector.fma(weights, weightedSums);
+        }
+        double sum = sums.reduceLanes(VectorOperators.ADD);
+        double weightedSum = weightedSums.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            sum += values[i];
+            weightedSum += values[i] * weight;
+        }
+        double mean = sum / n;
+        
+        DoubleVector means = DoubleVector.broadcast(SPECIES, mean);
+        DoubleVector squares = DoubleVector.zero(SPECIES);
+        i = 0;
+        for (; i < upperBound; i += SPECIES.length()) {
+            DoubleVector deviation = DoubleVector.fromArray(SPECIES, values, i).sub(means);
+            squares = deviation.fma(deviation, squares);
+        }
+        double squaredDeviations = squares.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            double deviation = values[i] - mean;
+            squaredDeviations += deviation * deviation;
+        }
+        
+        moments[MEAN] = mean;
+        moments[VARIANCE] = squaredDeviations / n;
+        moments[WEIGHTED_SCORE] = weightedSum / (weight * n);
+    }
+}
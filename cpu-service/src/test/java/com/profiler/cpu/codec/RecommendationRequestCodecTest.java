@@ -0,0 +1,166 @@
+package com.profiler.cpu.codec;
+
+import com.profiler.cpu.model.BuildingContext;
+import com.profiler.cpu.model.CustomerContext;
+import com.profiler.cpu.model.DeviceContext;
+import com.profiler.cpu.model.DeviceTypeSummary;
+import com.profiler.cpu.model.RecommendationRequest;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Round trips through the binary codec. io-service has a copy of the codec with the
+ * same test; both check {@link #FIXTURE}, so the two copies stay wire compatible.
+ */
+class RecommendationRequestCodecTest {
+    
+    /**
+     * Encoding of {@link #fixtureRequest()}, shared with the io-service codec test
+     */
+    static final String FIXTURE = "50520203f30107020103534d42002a0c"
+            + "04010101054f4d41494e058001010553"
+            + "4f4c41520400010653545544494f0401"
+            + "d00f010653454e534f52010741636d65"
+            + "20436f010353312d0106414354495645"
+            + "03130601012d08090102000000000203"
+            + "4e060402030209020108494e41435449"
+            + "5645032e00180a0c00";
+    
+    private final RecommendationRequestCodec codec = new RecommendationRequestCodec();
+    
+    @Test
+    void roundTripKeepsNullFields() throws IOException {
+        RecommendationRequest request = RecommendationRequest.builder()
+                .customer(new CustomerContext(null, null, "SMB", null, 0))
+                .buildings(List.of(new BuildingContext(null, null, null, null), new BuildingContext(5L, "OFFICE", null, 2)))
+                .devices(List.of(
+                        new DeviceContext(null, null, null, null, null, null),
+                        new DeviceContext(9L, "SENSOR", null, "S1", null, "ACTIVE")))
+                .build();
+        
+        RecommendationRequest decoded = roundTrip(request);
+        
+        assertThat(decoded).isEqualTo(request);
+        assertThat(decoded.getCustomerId()).isNull();
+        assertThat(decoded.getDeviceSummaries()).isNull();
+    }
+    
+    @Test
+    void roundTripDistinguishesNullAndEmptyLists() throws IOException {
+        RecommendationRequest empty = RecommendationRequest.builder()
+                .customerId(1L)
+                .buildings(List.of())
+                .devices(List.of())
+                .deviceSummaries(List.of())
+                .build();
+        RecommendationRequest absent = RecommendationRequest.builder()
+                .customerId(1L)
+                .build();
+        
+        assertThat(roundTrip(empty)).isEqualTo(empty);
+        assertThat(roundTrip(absent)).isEqualTo(absent);
+    }
+    
+    @Test
+    void roundTripKeepsNegativeAndExtremeValues() throws IOException {
+        Map<String, Integer> statusCounts = new LinkedHashMap<>();
+        statusCounts.put("ACTIVE", Integer.MAX_VALUE);
+        statusCounts.put("FAULTY", -1);
+        RecommendationRequest request = RecommendationRequest.builder()
+                .customerId(Long.MIN_VALUE)
+                .customer(new CustomerContext(Long.MAX_VALUE, "Negative Co", "ENTERPRISE", -3, Integer.MIN_VALUE))
+                // Descending and negative ids produce negative deltas
+                .buildings(List.of(new BuildingContext(100L, "WAREHOUSE", -250, 0), new BuildingContext(-100L, "OFFICE", 0, -1)))
+                .devices(List.of(
+                        new DeviceContext(Long.MAX_VALUE, "HVAC", "Acme", "H1", Integer.MIN_VALUE, "ACTIVE"),
+                        new DeviceContext(Long.MIN_VALUE, "HVAC", "Acme", "H1", -1, "ACTIVE"),
+                        new DeviceContext(0L, "HVAC", "Acme", "H1", Integer.MAX_VALUE, "ACTIVE")))
+                .deviceSummaries(List.of(
+                        new DeviceTypeSummary("HVAC", 3, 3, Long.MIN_VALUE, Integer.MIN_VALUE, -1, statusCounts),
+                        new DeviceTypeSummary("LIGHT", null, null, null, null, null, null)))
+                .build();
+        
+        assertThat(roundTrip(request)).isEqualTo(request);
+    }
+    
+    @Test
+    void repeatedStringsAreWrittenOnceAndReused() throws IOException {
+        List<DeviceContext> devices = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            devices.add(new DeviceContext((long) i, i % 2 == 0 ? "THERMOSTAT" : "CAMERA", "Honeywell",
+                                          "T-" + (i % 3), i, "ACTIVE"));
+        }
+        RecommendationRequest request = RecommendationRequest.builder()
+                .customerId(42L)
+                .buildings(List.of(new BuildingContext(1L, "ACTIVE", 10, 200)))
+                .devices(devices)
+                .build();
+        
+        byte[] encoded = codec.encode(request);
+        
+        // "ACTIVE" first appears as a building type and is then referenced by every device
+        assertThat(occurrences(encoded, "ACTIVE")).isEqualTo(1);
+        assertThat(occurrences(encoded, "Honeywell")).isEqualTo(1);
+        assertThat(occurrences(encoded, "THERMOSTAT")).isEqualTo(1);
+        assertThat(occurrences(encoded, "T-2")).isEqualTo(1);
+        assertThat(roundTrip(request)).isEqualTo(request);
+    }
+    
+    @Test
+    void encodesTheSharedFixture() throws IOException {
+        byte[] encoded = codec.encode(fixtureRequest());
+        
+        assertThat(HexFormat.of().formatHex(encoded)).isEqualTo(FIXTURE);
+        assertThat(codec.decode(new ByteArrayInputStream(HexFormat.of().parseHex(FIXTURE)))).isEqualTo(fixtureRequest());
+    }
+    
+    static RecommendationRequest fixtureRequest() {
+        Map<String, Integer> statusCounts = new LinkedHashMap<>();
+        statusCounts.put("ACTIVE", 1);
+        statusCounts.put("INACTIVE", -2);
+        return RecommendationRequest.builder()
+                .customerId(-122L)
+                .customer(new CustomerContext(1L, "SMB", null, 21, 6))
+                .buildings(List.of(
+                        new BuildingContext(-1L, "OMAIN", null, null),
+                        new BuildingContext(63L, "SOLAR", null, 2),
+                        new BuildingContext(null, "STUDIO", null, null)))
+                .devices(List.of(
+                        new DeviceContext(1000L, "SENSOR", "Acme Co", "S1-", null, "ACTIVE"),
+                        new DeviceContext(990L, "SENSOR", "-", "S1-", -1, "ACTIVE"),
+                        new DeviceContext(null, null, null, null, 1, null)))
+                .deviceSummaries(List.of(
+                        new DeviceTypeSummary("SENSOR", 2, 1, -2L, null, null, statusCounts),
+                        new DeviceTypeSummary(null, 12, 5, 6L, null, 0, null)))
+                .build();
+    }
+    
+    private RecommendationRequest roundTrip(RecommendationRequest request) throws IOException {
+        return codec.decode(new ByteArrayInputStream(codec.encode(request)));
+    }
+    
+    private static int occurrences(byte[] haystack, String value) {
+        byte[] needle = value.getBytes(StandardCharsets.UTF_8);
+        int count = 0;
+        for (int i = 0; i + needle.length <= haystack.length; i++) {
+            int j = 0;
+            while (j < needle.length && haystack[i + j] == needle[j]) {
+                j++;
+            }
+            if (j == needle.length) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,193 @@
+package com.profiler.cpu.service;
+
+import com.profiler.cpu.model.BuildingContext;
+import com.profiler.cpu.model.DeviceContext;
+import com.profiler.cpu.util.MathKernels;
+import com.profiler.cpu.util.MathUtils;
+import com.profiler.cpu.util.ScoreCalculator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The per-power memo and the early exit at the 100 cap must give the same scores, bit for bit,
+ * as the original per-device loop, which is kept here as {@link #originalDeviceScore}.
+ */
+class CompatibilityAnalyzerServiceTest {
+    
+    private static final String[] CUSTOMER_TYPES = {"LARGE", "SMB", "ENTERPRISE", null};
+    private static final String[] DEVICE_TYPES = {"THERMOSTAT", "CAMERA", "SENSOR", "HVAC", "LIGHT"};
+    
+    private final Random random = new Random(20240521L);
+    private final ForkJoinPool scoringPool = new ForkJoinPool(4);
+    
+    @AfterEach
+    void tearDown() {
+        scoringPool.shutdownNow();
+    }
+    
+    @Test
+    void memoizedScoresMatchTheOriginalLoop() {
+        for (int trial = 0; trial < 500; trial++) {
+            List<BuildingContext> buildings = randomBuildings(trial % 5 == 0);
+            String customerType = CUSTOMER_TYPES[random.nextInt(CUSTOMER_TYPES.length)];
+            CompatibilityAnalyzerService.ScoringContext context =
+                    new CompatibilityAnalyzerService.ScoringContext(buildings, customerType);
+            
+            for (int i = 0; i < 200; i++) {
+                Integer power = randomPower();
+                double expected = originalDeviceScore(power, buildings, customerType);
+                
+                assertThat(context.score(power)).as("trial %d, power %s", trial, power).isEqualTo(expected);
+                // Second lookup is served from the memo
+                assertThat(context.score(power)).as("trial %d, power %s", trial, power).isEqualTo(expected);
+            }
+        }
+    }
+    
+    @Test
+    void earlyExitAtTheCapMatchesTheOriginalLoop() {
+        // Large buildings first, so the cap is reached before the remaining terms are added
+        List<BuildingContext> buildings = new ArrayList<>();
+        buildings.add(new BuildingContext(1L, "WAREHOUSE", 9_000, 1));
+        for (int i = 0; i < 50; i++) {
+            buildings.add(new BuildingContext((long) i + 2, "OFFICE", random.nextInt(500), 1));
+        }
+        buildings.add(new BuildingContext(99L, "OFFICE", null, 1));
+        
+        for (String customerType : CUSTOMER_TYPES) {
+            CompatibilityAnalyzerService.ScoringContext context =
+                    new CompatibilityAnalyzerService.ScoringContext(buildings, customerType);
+            for (Integer power : new Integer[] {null, 0, 100, 1_000, 10_000, -10_000, Integer.MAX_VALUE, Integer.MIN_VALUE}) {
+                assertThat(context.score(power))
+                        .as("%s, power %s", customerType, power)
+                        .isEqualTo(originalDeviceScore(power, buildings, customerType));
+            }
+        }
+    }
+    
+    @Test
+    void analyzeCompatibilityMatchesTheOriginalLoop() {
+        MathKernels kernels = MathKernels.select("scalar");
+        MathUtils mathUtils = new MathUtils(kernels, new SimpleMeterRegistry(), false, 1024, 16);
+        ScoreAggregatorService aggregator = new ScoreAggregatorService(mathUtils, new ScoreCalculator(kernels));
+        CompatibilityAnalyzerService sequential =
+                new CompatibilityAnalyzerService(aggregator, mathUtils, scoringPool, false, 2000);
+        CompatibilityAnalyzerService parallel =
+                new CompatibilityAnalyzerService(aggregator, mathUtils, scoringPool, true, 0);
+        
+        for (int trial = 0; trial < 20; trial++) {
+            List<BuildingContext> buildings = randomBuildings(trial % 4 == 0);
+            String customerType = CUSTOMER_TYPES[trial % CUSTOMER_TYPES.length];
+            List<DeviceContext> devices = randomDevices(1 + random.nextInt(1_500));
+            Map<String, Double> expected = originalCompatibility(devices, buildings, customerType, aggregator, mathUtils);
+            
+            assertThat(sequential.analyzeCompatibility(devices, buildings, customerType))
+                    .as("sequential, trial %d", trial)
+                    .isEqualTo(expected);
+            assertThat(parallel.analyzeCompatibility(devices, buildings, customerType))
+                    .as("parallel, trial %d", trial)
+                    .isEqualTo(expected);
+        }
+    }
+    
+    /**
+     * The device score as computed before the memo: every building, every device
+     */
+    private static double originalDeviceScore(Integer powerConsumption, List<BuildingContext> buildings, String customerType) {
+        double score = 50.0; // Base score
+        
+        // Factor in power consumption
+        if (powerConsumption != null) {
+            score += (100 - powerConsumption) / 10.0;
+        }
+        
+        // Factor in building compatibility
+        for (BuildingContext building : buildings) {
+            if (building.getSquareMeters() != null) {
+                score += building.getSquareMeters() / 100.0;
+            }
+        }
+        
+        // Customer type multiplier
+        if ("LARGE".equals(customerType)) {
+            score *= 1.2;
+        }
+        
+        return Math.min(100.0, score);
+    }
+    
+    private static Map<String, Double> originalCompatibility(List<DeviceContext> devices,
+                                                             List<BuildingContext> buildings,
+                                                             String customerType,
+                                                             ScoreAggregatorService aggregator,
+                                                             MathUtils mathUtils) {
+        Map<String, List<DeviceContext>> devicesByType = new HashMap<>();
+        for (DeviceContext device : devices) {
+            devicesByType.computeIfAbsent(device.getDeviceType(), type -> new ArrayList<>()).add(device);
+        }
+        
+        Map<String, Double> compatibilityScores = new HashMap<>();
+        for (Map.Entry<String, List<DeviceContext>> entry : devicesByType.entrySet()) {
+            List<DeviceContext> typeDevices = entry.getValue();
+            double[] scores = new double[typeDevices.size()];
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] = originalDeviceScore(typeDevices.get(i).getPowerConsumption(), buildings, customerType);
+            }
+            double primeBonus = mathUtils.isPrime(scores.length) ? 1.1 : 1.0;
+            compatibilityScores.put(entry.getKey(),
+                    aggregator.aggregateScores(scores, entry.getKey(), scores.length) * primeBonus);
+        }
+        return compatibilityScores;
+    }
+    
+    /**
+     * Mostly realistic sizes; with {@code withNegative} some are negative, which turns the early exit off
+     */
+    private List<BuildingContext> randomBuildings(boolean withNegative) {
+        int count = random.nextInt(30);
+        List<BuildingContext> buildings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Integer squareMeters;
+            int kind = random.nextInt(10);
+            if (kind == 0) {
+                squareMeters = null;
+            } else if (kind == 1 && withNegative) {
+                squareMeters = -random.nextInt(5_000);
+            } else if (kind == 2) {
+                squareMeters = random.nextInt(20_000);
+            } else {
+                squareMeters = random.nextInt(1_000);
+            }
+            buildings.add(new BuildingContext((long) i, "OFFICE", squareMeters, random.nextInt(10)));
+        }
+        return buildings;
+    }
+    
+    private Integer randomPower() {
+        return switch (random.nextInt(8)) {
+            case 0 -> null;
+            case 1 -> random.nextInt();
+            case 2 -> -random.nextInt(1_000);
+            default -> random.nextInt(1_000);
+        };
+    }
+    
+    private List<DeviceContext> randomDevices(int count) {
+        List<DeviceContext> devices = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String deviceType = DEVICE_TYPES[random.nextInt(DEVICE_TYPES.length)];
+            devices.add(new DeviceContext((long) i, deviceType, "Acme", "M-" + i % 7, randomPower(), "ACTIVE"));
+        }
+        return devices;
+    }
+}
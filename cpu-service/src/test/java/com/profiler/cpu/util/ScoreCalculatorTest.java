@@ -0,0 +1,99 @@
+package com.profiler.cpu.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * {@link ScoreCalculator#summarize} against the boxed {@code List} statistics it replaced
+ */
+class ScoreCalculatorTest {
+    
+    private final ScoreCalculator calculator = new ScoreCalculator(new ScalarMathKernels());
+    private final Random random = new Random(7L);
+    
+    @Test
+    void medianOfOddAndEvenLengths() {
+        assertThat(median(5.0)).isEqualTo(5.0);
+        assertThat(median(3.0, 1.0, 2.0)).isEqualTo(2.0);
+        assertThat(median(8.0, 2.0)).isEqualTo(5.0);
+        assertThat(median(4.0, 1.0, 3.0, 2.0)).isEqualTo(2.5);
+        assertThat(median(5.0, 5.0, 1.0, 5.0)).isEqualTo(5.0);
+        assertThat(median(-1.0, 7.0, 7.0, -1.0, 0.0, 100.0)).isEqualTo(3.5);
+    }
+    
+    @Test
+    void summarizeMatchesTheBoxedStatistics() {
+        for (int trial = 0; trial < 2_000; trial++) {
+            // Odd and even lengths alike, from a single value up
+            int n = 1 + random.nextInt(trial < 1_000 ? 16 : 500);
+            double[] values = randomValues(n, trial % 3 == 0);
+            List<Double> boxed = box(values);
+            
+            double[] expected = calculator.calculateStatistics(boxed);
+            double expectedWeighted = calculator.calculateWeightedScore(boxed, Collections.nCopies(n, 1.0 / n));
+            double[] summary = calculator.summarize(values.clone());
+            
+            assertThat(summary[ScoreCalculator.MEAN]).as("mean, n=%d", n).isEqualTo(expected[0]);
+            assertThat(summary[ScoreCalculator.MEDIAN]).as("median, n=%d", n).isEqualTo(expected[1]);
+            assertThat(summary[ScoreCalculator.WEIGHTED_SCORE]).as("weighted score, n=%d", n).isEqualTo(expectedWeighted);
+            // One-pass Welford against the two-pass sum of squares: equal up to rounding
+            assertThat(Math.abs(summary[ScoreCalculator.VARIANCE] - expected[3]))
+                    .as("variance, n=%d", n)
+                    .isLessThanOrEqualTo(1e-9 * Math.max(1.0, expected[3]));
+            assertThat(Math.abs(summary[ScoreCalculator.STDDEV] - expected[2]))
+                    .as("stddev, n=%d", n)
+                    .isLessThanOrEqualTo(1e-9 * Math.max(1.0, expected[2]));
+        }
+    }
+    
+    @Test
+    void summarizeOfSortedAndConstantInput() {
+        double[] sorted = new double[1_001];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = i;
+        }
+        double[] constant = new double[1_000];
+        Arrays.fill(constant, 42.0);
+        
+        assertThat(calculator.summarize(sorted.clone())[ScoreCalculator.MEDIAN]).isEqualTo(500.0);
+        assertThat(calculator.summarize(constant.clone())[ScoreCalculator.MEDIAN]).isEqualTo(42.0);
+        assertThat(calculator.summarize(constant.clone())[ScoreCalculator.VARIANCE]).isEqualTo(0.0);
+    }
+    
+    private double median(double... values) {
+        double expected = calculator.calculateStatistics(box(values))[1];
+        double median = calculator.summarize(values.clone())[ScoreCalculator.MEDIAN];
+        assertThat(median).isEqualTo(expected);
+        return median;
+    }
+    
+    /**
+     * Device scores are capped at 100 and often repeat; the wide range covers the rest
+     */
+    private double[] randomValues(int n, boolean wideRange) {
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            if (wideRange) {
+                values[i] = (random.nextDouble() - 0.5) * 1e7;
+            } else {
+                values[i] = random.nextInt(4) == 0 ? 100.0 : Math.round(random.nextDouble() * 1_000) / 10.0;
+            }
+        }
+        return values;
+    }
+    
+    private static List<Double> box(double[] values) {
+        List<Double> boxed = new ArrayList<>(values.length);
+        for (double value : values) {
+            boxed.add(value);
+        }
+        return boxed;
+    }
+}
@@ -1,13 +1,17 @@
 package com.profiler.io;
 
+import com.profiler.io.codec.RecommendationRequestBinaryConverter;
+import com.profiler.io.codec.RecommendationRequestCodec;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestTemplate;
 
 @SpringBootApplication
 @EnableAutoConfiguration
+@EnableScheduling
 public class IoServiceApplication {
     
     public static void main(String[] args) {
@@ -15,7 +19,9 @@ public class IoServiceApplication {
     }
     
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(RecommendationRequestCodec codec) {
+        RestTemplate restTemplate = new RestTemplate();
+        restTemplate.getMessageConverters().add(0, new RecommendationRequestBinaryConverter(codec));
+        return restTemplate;
     }
 }
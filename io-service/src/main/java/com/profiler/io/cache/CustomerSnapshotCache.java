@@ -0,0 +1,260 @@
+package com.profiler.io.cache;
+
+import com.profiler.io.model.RecommendationRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * In-process LRU cache of enriched customer snapshots.
+ * Bounded both by entry count and by total weight, where the weight of an entry
+ * is one plus its number of devices or device type summaries, so a few LARGE
+ * customers cannot evict everything else.
+ * Every load registers a token for its key; invalidating the key drops the token,
+ * so a snapshot loaded before an invalidation is returned but not cached.
+ * Entries expire one TTL after the snapshot's loadedAt, so snapshots served from
+ * {@link SnapshotFileStore} keep the time they were first loaded.
+ */
+@Component
+public class CustomerSnapshotCache {
+    
+    private static final Logger logger = LoggerFactory.getLogger(CustomerSnapshotCache.class);
+    
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long maxWeight;
+    private final long maxEntryWeight;
+    private final long ttlMs;
+    
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalWeight = 0;
+    private final Map<Long, Long> loadTokens = new HashMap<>();
+    private long lastLoadToken = 0;
+    
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter capacityEvictions;
+    private final Counter expiredEvictions;
+    private final Counter invalidations;
+    private final Timer loadTimer;
+    
+    public CustomerSnapshotCache(MeterRegistry meterRegistry,
+                                 @Value("${snapshot-cache.enabled:false}") boolean enabled,
+                                 @Value("${snapshot-cache.max-entries:10000}") int maxEntries,
+                                 @Value("${snapshot-cache.max-weight:500000}") long maxWeight,
+                                 @Value("${snapshot-cache.max-entry-weight:50000}") long maxEntryWeight,
+                                 @Value("${snapshot-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.maxEntryWeight = Math.min(maxEntryWeight, maxWeight);
+        this.ttlMs = ttlSeconds * 1000L;
+        
+        this.hits = Counter.builder("snapshot.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("snapshot.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.capacityEvictions = Counter.builder("snapshot.cache.evictions").tag("cause", "capacity").register(meterRegistry);
+        this.expiredEvictions = Counter.builder("snapshot.cache.evictions").tag("cause", "expired").register(meterRegistry);
+        this.invalidations = Counter.builder("snapshot.cache.evictions").tag("cause", "invalidated").register(meterRegistry);
+        this.loadTimer = Timer.builder("snapshot.cache.load").register(meterRegistry);
+        Gauge.builder("snapshot.cache.size", this, CustomerSnapshotCache::size).register(meterRegistry);
+        Gauge.builder("snapshot.cache.weight", this, CustomerSnapshotCache::weight).register(meterRegistry);
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Returns the cached snapshot for the customer, loading and caching it on a miss.
+     * The loader runs outside the cache lock; its result is only cached if the customer
+     * was not invalidated while it ran.
+     */
+    public RecommendationRequest get(Long customerId, Function<Long, RecommendationRequest> loader) {
+        RecommendationRequest cached = lookup(customerId);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        
+        long token = beginLoad(customerId);
+        long startTime = System.nanoTime();
+        RecommendationRequest loaded;
+        try {
+            loaded = loader.apply(customerId);
+        } catch (RuntimeException e) {
+            endLoad(customerId, token);
+            throw e;
+        }
+        loadTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        
+        long loadedAt = loaded.getLoadedAt() != null ? loaded.getLoadedAt().toEpochMilli() : System.currentTimeMillis();
+        putIfCurrent(customerId, token, loaded, loadedAt);
+        return loaded;
+    }
+    
+    /**
+     * Caches a snapshot read from the on-disk store, unless the customer is invalidated or
+     * loaded again while it is read, or it is already older than the TTL.
+     * Returns whether it was cached.
+     */
+    public boolean preload(Long customerId, Function<Long, SnapshotFileStore.StoredSnapshot> reader) {
+        long token = beginLoad(customerId);
+        SnapshotFileStore.StoredSnapshot stored;
+        try {
+            stored = reader.apply(customerId);
+        } catch (RuntimeException e) {
+            endLoad(customerId, token);
+            throw e;
+        }
+        if (stored == null) {
+            endLoad(customerId, token);
+            return false;
+        }
+        return putIfCurrent(customerId, token, stored.request(), stored.createdAt());
+    }
+    
+    public long getTtlMs() {
+        return ttlMs;
+    }
+    
+    public synchronized RecommendationRequest lookup(Long customerId) {
+        Entry entry = entries.get(customerId);
+        if (entry == null) {
+            return null;
+        }
+        if (isExpired(entry, System.currentTimeMillis())) {
+            remove(customerId);
+            expiredEvictions.increment();
+            return null;
+        }
+        return entry.request;
+    }
+    
+    public void put(Long customerId, RecommendationRequest request) {
+        put(customerId, request, System.currentTimeMillis());
+    }
+    
+    /**
+     * Caches a snapshot loaded at {@code createdAt}; it expires one TTL after that.
+     * An entry loaded later than {@code createdAt} is kept.
+     */
+    private synchronized boolean put(Long customerId, RecommendationRequest request, long createdAt) {
+        long weight = weigh(request);
+        if (weight > maxEntryWeight) {
+            logger.debug("Not caching snapshot for customer {}: weight {} exceeds {}", customerId, weight, maxEntryWeight);
+            return false;
+        }
+        Entry existing = entries.get(customerId);
+        if (existing != null && existing.createdAt > createdAt) {
+            return false;
+        }
+        Entry entry = new Entry(request, weight, createdAt);
+        if (isExpired(entry, System.currentTimeMillis())) {
+            return false;
+        }
+        
+        remove(customerId);
+        entries.put(customerId, entry);
+        totalWeight += weight;
+        evictIfNeeded();
+        return true;
+    }
+    
+    public synchronized boolean invalidate(Long customerId) {
+        loadTokens.remove(customerId);
+        boolean removed = remove(customerId);
+        if (removed) {
+            invalidations.increment();
+        }
+        return removed;
+    }
+    
+    public synchronized int invalidateAll() {
+        int removed = entries.size();
+        loadTokens.clear();
+        entries.clear();
+        totalWeight = 0;
+        invalidations.increment(removed);
+        return removed;
+    }
+    
+    public synchronized int size() {
+        return entries.size();
+    }
+    
+    public synchronized long weight() {
+        return totalWeight;
+    }
+    
+    private synchronized long beginLoad(Long customerId) {
+        long token = ++lastLoadToken;
+        loadTokens.put(customerId, token);
+        return token;
+    }
+    
+    private synchronized void endLoad(Long customerId, long token) {
+        loadTokens.remove(customerId, token);
+    }
+    
+    /**
+     * Caches a loaded snapshot unless its token was dropped by an invalidation
+     * or replaced by a later load of the same customer
+     */
+    private synchronized boolean putIfCurrent(Long customerId, long token, RecommendationRequest request, long createdAt) {
+        if (loadTokens.remove(customerId, token)) {
+            return put(customerId, request, createdAt);
+        }
+        logger.debug("Not caching snapshot for customer {}: superseded while loading", customerId);
+        return false;
+    }
+    
+    private void evictIfNeeded() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Long, Entry>> iterator = entries.entrySet().iterator();
+        
+        while (iterator.hasNext() && (entries.size() > maxEntries || totalWeight > maxWeight)) {
+            Entry eldest = iterator.next().getValue();
+            iterator.remove();
+            totalWeight -= eldest.weight;
+            if (isExpired(eldest, now)) {
+                expiredEvictions.increment();
+            } else {
+                capacityEvictions.increment();
+            }
+        }
+    }
+    
+    private boolean remove(Long customerId) {
+        Entry removed = entries.remove(customerId);
+        if (removed == null) {
+            return false;
+        }
+        totalWeight -= removed.weight;
+        return true;
+    }
+    
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.createdAt > ttlMs;
+    }
+    
+    private long weigh(RecommendationRequest request) {
+        return 1 + (request.getDevices() != null ? request.getDevices().size() : 0)
+                + (request.getDeviceSummaries() != null ? request.getDeviceSummaries().size() : 0);
+    }
+    
+    private record Entry(RecommendationRequest request, long weight, long createdAt) {
+    }
+}
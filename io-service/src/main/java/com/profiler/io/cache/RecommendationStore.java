@@ -0,0 +1,59 @@
+package com.profiler.io.cache;
+
+import com.profiler.io.model.RecommendationResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Latest computed recommendations per customer, filled by the precompute job
+ * and by synchronous requests. Entries carry their computedAt timestamp.
+ * Holds at most max-entries customers; the least recently used one is evicted.
+ */
+@Component
+public class RecommendationStore {
+    
+    private final int maxEntries;
+    private final LinkedHashMap<Long, RecommendationResponse> responses = new LinkedHashMap<>(16, 0.75f, true);
+    private final Counter evictions;
+    
+    public RecommendationStore(MeterRegistry meterRegistry,
+                               @Value("${recommendations.store.max-entries:100000}") int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.evictions = Counter.builder("recommendations.store.evictions").register(meterRegistry);
+        Gauge.builder("recommendations.store.size", this, RecommendationStore::size).register(meterRegistry);
+    }
+    
+    public synchronized RecommendationResponse get(Long customerId) {
+        return responses.get(customerId);
+    }
+    
+    public synchronized void put(RecommendationResponse response) {
+        if (response.getComputedAt() == null) {
+            response.setComputedAt(Instant.now());
+        }
+        responses.put(response.getCustomerId(), response);
+        
+        Iterator<Map.Entry<Long, RecommendationResponse>> iterator = responses.entrySet().iterator();
+        while (responses.size() > maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+    
+    public synchronized boolean invalidate(Long customerId) {
+        return responses.remove(customerId) != null;
+    }
+    
+    public synchronized int size() {
+        return responses.size();
+    }
+}
@@ -0,0 +1,54 @@
+package com.profiler.io.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fills the in-memory snapshot cache from the on-disk store after startup,
+ * newest snapshots first, so a restarted instance serves warm data right away.
+ * Only files younger than the cache TTL are read: entries keep the file's creation time.
+ */
+@Component
+public class SnapshotCacheWarmer {
+    
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotCacheWarmer.class);
+    
+    private final CustomerSnapshotCache snapshotCache;
+    private final SnapshotFileStore snapshotStore;
+    private final boolean preload;
+    private final int preloadMaxEntries;
+    
+    public SnapshotCacheWarmer(CustomerSnapshotCache snapshotCache,
+                               SnapshotFileStore snapshotStore,
+                               @Value("${snapshot-store.preload:true}") boolean preload,
+                               @Value("${snapshot-store.preload-max-entries:10000}") int preloadMaxEntries) {
+        this.snapshotCache = snapshotCache;
+        this.snapshotStore = snapshotStore;
+        this.preload = preload;
+        this.preloadMaxEntries = preloadMaxEntries;
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!preload || !snapshotStore.isEnabled() || !snapshotCache.isEnabled()) {
+            return;
+        }
+        Thread.ofPlatform().daemon().name("snapshot-cache-warmer").start(() -> {
+            long startTime = System.currentTimeMillis();
+            int loaded = 0;
+            for (Long customerId : snapshotStore.recentCustomerIds(snapshotCache.getTtlMs())) {
+                if (loaded >= preloadMaxEntries) {
+                    break;
+                }
+                if (snapshotCache.preload(customerId, snapshotStore::readStored)) {
+                    loaded++;
+                }
+            }
+            logger.info("Preloaded {} snapshots from disk in {} ms", loaded, System.currentTimeMillis() - startTime);
+        });
+    }
+}
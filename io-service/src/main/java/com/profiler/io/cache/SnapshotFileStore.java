@@ -0,0 +1,367 @@
+package com.profiler.io.cache;
+
+import com.profiler.io.codec.RecommendationRequestCodec;
+import com.profiler.io.model.RecommendationRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * On-disk tier behind {@link CustomerSnapshotCache}: one memory-mapped file per customer
+ * holding the binary-encoded snapshot, so a restarted instance does not start cold.
+ * Each file has a header with the store layout version, the configured data version,
+ * the creation time and a CRC of the payload; files that do not match are rebuilt.
+ * The creation time is the snapshot's loadedAt, and is restored into it on read.
+ * Loads are guarded by tokens like in {@link CustomerSnapshotCache}: a snapshot loaded
+ * while its customer was invalidated is returned but not written.
+ */
+@Component
+public class SnapshotFileStore {
+    
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotFileStore.class);
+    
+    private static final int MAGIC = 0x50534E50; // "PSNP"
+    private static final int LAYOUT_VERSION = 1;
+    private static final int HEADER_SIZE = 28; // magic, layout, data version, created at, length, crc
+    private static final String FILE_PREFIX = "customer-";
+    private static final String FILE_SUFFIX = ".snap";
+    
+    private final RecommendationRequestCodec codec;
+    private final boolean enabled;
+    private final Path directory;
+    private final int dataVersion;
+    private final long ttlMs;
+    
+    private final Map<Long, Long> loadTokens = new HashMap<>();
+    private long lastLoadToken = 0;
+    
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter stale;
+    private final Counter writeFailures;
+    
+    public SnapshotFileStore(RecommendationRequestCodec codec,
+                             MeterRegistry meterRegistry,
+                             @Value("${snapshot-store.enabled:false}") boolean enabled,
+                             @Value("${snapshot-store.directory:${java.io.tmpdir}/io-service-snapshots}") Path directory,
+                             @Value("${snapshot-store.data-version:1}") int dataVersion,
+                             @Value("${snapshot-store.ttl-seconds:3600}") long ttlSeconds) {
+        this.codec = codec;
+        this.enabled = enabled;
+        this.directory = directory;
+        this.dataVersion = dataVersion;
+        this.ttlMs = ttlSeconds * 1000L;
+        
+        this.hits = Counter.builder("snapshot.store.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("snapshot.store.requests").tag("result", "miss").register(meterRegistry);
+        this.stale = Counter.builder("snapshot.store.requests").tag("result", "stale").register(meterRegistry);
+        this.writeFailures = Counter.builder("snapshot.store.write.failures").register(meterRegistry);
+        
+        if (enabled) {
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot create snapshot store directory " + directory, e);
+            }
+            logger.info("Snapshot store at {} (data version {})", directory, dataVersion);
+        }
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Returns the stored snapshot, or loads it and writes it to disk when it is missing,
+     * expired, from another version or corrupt. The snapshot is not written if the customer
+     * was invalidated while it loaded.
+     */
+    public RecommendationRequest get(Long customerId, Function<Long, RecommendationRequest> loader) {
+        RecommendationRequest stored = read(customerId);
+        if (stored != null) {
+            hits.increment();
+            return stored;
+        }
+        
+        long token = beginLoad(customerId);
+        RecommendationRequest loaded;
+        try {
+            loaded = loader.apply(customerId);
+        } catch (RuntimeException e) {
+            endLoad(customerId, token);
+            throw e;
+        }
+        write(customerId, token, loaded);
+        return loaded;
+    }
+    
+    public RecommendationRequest read(Long customerId) {
+        StoredSnapshot stored = readStored(customerId);
+        return stored != null ? stored.request() : null;
+    }
+    
+    /**
+     * Like {@link #read}, together with the time the snapshot was written
+     */
+    public StoredSnapshot readStored(Long customerId) {
+        Path file = fileFor(customerId);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            StoredSnapshot stored = decode(mapped, System.currentTimeMillis());
+            if (stored == null) {
+                stale.increment();
+                Files.deleteIfExists(file);
+            }
+            return stored;
+        } catch (NoSuchFileException e) {
+            misses.increment();
+            return null;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Discarding unreadable snapshot {}: {}", file, e.getMessage());
+            stale.increment();
+            deleteQuietly(file);
+            return null;
+        }
+    }
+    
+    /**
+     * Writes to a temporary file and renames it into place, so readers never see a partial file
+     */
+    public void write(Long customerId, RecommendationRequest request) {
+        write(customerId, 0, request);
+    }
+    
+    /**
+     * A non-zero token is checked under the store lock just before the rename,
+     * so an invalidation either deletes the new file or prevents it
+     */
+    private void write(Long customerId, long token, RecommendationRequest request) {
+        Path file = fileFor(customerId);
+        Path temp = directory.resolve(file.getFileName() + "." + Thread.currentThread().threadId() + ".tmp");
+        try {
+            byte[] payload = codec.encode(request);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                    .putInt(MAGIC)
+                    .putInt(LAYOUT_VERSION)
+                    .putInt(dataVersion)
+                    .putLong(request.getLoadedAt() != null ? request.getLoadedAt().toEpochMilli() : System.currentTimeMillis())
+                    .putInt(payload.length)
+                    .putInt((int) crc.getValue())
+                    .flip();
+            
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.write(new ByteBuffer[]{header, ByteBuffer.wrap(payload)});
+            }
+            synchronized (this) {
+                if (token != 0 && !loadTokens.remove(customerId, token)) {
+                    logger.debug("Not storing snapshot for customer {}: superseded while loading", customerId);
+                    deleteQuietly(temp);
+                    return;
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            writeFailures.increment();
+            logger.warn("Could not write snapshot for customer {}: {}", customerId, e.getMessage());
+            deleteQuietly(temp);
+            endLoad(customerId, token);
+        }
+    }
+    
+    public synchronized boolean invalidate(Long customerId) {
+        if (!enabled) {
+            return false;
+        }
+        loadTokens.remove(customerId);
+        try {
+            return Files.deleteIfExists(fileFor(customerId));
+        } catch (IOException e) {
+            logger.warn("Could not delete snapshot for customer {}: {}", customerId, e.getMessage());
+            return false;
+        }
+    }
+    
+    public synchronized int invalidateAll() {
+        loadTokens.clear();
+        int removed = 0;
+        for (Path file : listSnapshotFiles()) {
+            if (deleteQuietly(file)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+    
+    /**
+     * Customers with a snapshot written within the last {@code maxAgeMs}, newest first.
+     * Only the directory is listed; the files are not read or validated.
+     */
+    public List<Long> recentCustomerIds(long maxAgeMs) {
+        long oldest = System.currentTimeMillis() - maxAgeMs;
+        List<Path> files = new ArrayList<>();
+        for (Path file : listSnapshotFiles()) {
+            if (lastModified(file) >= oldest) {
+                files.add(file);
+            }
+        }
+        files.sort(Comparator.comparingLong(SnapshotFileStore::lastModified).reversed());
+        
+        List<Long> customerIds = new ArrayList<>(files.size());
+        for (Path file : files) {
+            Long customerId = customerIdOf(file);
+            if (customerId != null) {
+                customerIds.add(customerId);
+            }
+        }
+        return customerIds;
+    }
+    
+    private synchronized long beginLoad(Long customerId) {
+        long token = ++lastLoadToken;
+        loadTokens.put(customerId, token);
+        return token;
+    }
+    
+    private synchronized void endLoad(Long customerId, long token) {
+        loadTokens.remove(customerId, token);
+    }
+    
+    private StoredSnapshot decode(MappedByteBuffer mapped, long now) throws IOException {
+        if (mapped.remaining() < HEADER_SIZE || mapped.getInt() != MAGIC) {
+            throw new IOException("not a snapshot file");
+        }
+        int layoutVersion = mapped.getInt();
+        int fileDataVersion = mapped.getInt();
+        long createdAt = mapped.getLong();
+        int length = mapped.getInt();
+        int checksum = mapped.getInt();
+        
+        if (layoutVersion != LAYOUT_VERSION || fileDataVersion != dataVersion || now - createdAt > ttlMs) {
+            return null;
+        }
+        if (length != mapped.remaining()) {
+            throw new IOException("truncated payload");
+        }
+        
+        ByteBuffer payload = mapped.slice();
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("checksum mismatch");
+        }
+        RecommendationRequest request = codec.decode(new ByteBufferInputStream(payload));
+        request.setLoadedAt(Instant.ofEpochMilli(createdAt));
+        return new StoredSnapshot(request, createdAt);
+    }
+    
+    private Path fileFor(Long customerId) {
+        return directory.resolve(FILE_PREFIX + customerId + FILE_SUFFIX);
+    }
+    
+    private Long customerIdOf(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.valueOf(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    private List<Path> listSnapshotFiles() {
+        List<Path> files = new ArrayList<>();
+        if (!enabled) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            logger.warn("Could not list snapshot store {}: {}", directory, e.getMessage());
+        }
+        return files;
+    }
+    
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+    
+    private static boolean deleteQuietly(Path file) {
+        try {
+            return Files.deleteIfExists(file);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * A snapshot read from disk and the time its file was written, in epoch milliseconds
+     */
+    public record StoredSnapshot(RecommendationRequest request, long createdAt) {
+    }
+    
+    /**
+     * Reads straight from the mapped buffer, without copying the payload to the heap
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        
+        private final ByteBuffer buffer;
+        
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+        
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+        
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+        
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
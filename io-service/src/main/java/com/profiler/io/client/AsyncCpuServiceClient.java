@@ -0,0 +1,202 @@
+package com.profiler.io.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.profiler.io.codec.RecommendationRequestCodec;
+import com.profiler.io.codec.WireFormat;
+import com.profiler.io.codec.WireFormatNegotiator;
+import com.profiler.io.model.RecommendationRequest;
+import com.profiler.io.model.RecommendationResponse;
+import com.profiler.io.util.AsyncSemaphore;
+import com.profiler.io.util.Deadline;
+import com.profiler.io.util.DeadlineExceededException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Non-blocking CPU service client on java.net.http.HttpClient.
+ * Connections are pooled and reused (HTTP/1.1 keep-alive or HTTP/2), and the
+ * number of requests in flight is capped so callers get back-pressure instead
+ * of an unbounded queue of parked threads. Async callers wait for a permit in a
+ * queue without holding a thread; blocking callers never wait for one.
+ */
+@Component
+public class AsyncCpuServiceClient {
+    
+    private static final Logger logger = LoggerFactory.getLogger(AsyncCpuServiceClient.class);
+    
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final RecommendationRequestCodec codec;
+    private final WireFormatNegotiator wireFormatNegotiator;
+    private final URI calculateUri;
+    private final Duration readTimeout;
+    private final AsyncSemaphore inFlight;
+    private final long acquireTimeoutMs;
+    
+    public AsyncCpuServiceClient(ObjectMapper objectMapper,
+                                 RecommendationRequestCodec codec,
+                                 WireFormatNegotiator wireFormatNegotiator,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${cpu-service.url}") String cpuServiceUrl,
+                                 @Value("${cpu-service.http-client.version:HTTP_1_1}") HttpClient.Version version,
+                                 @Value("${cpu-service.http-client.connect-timeout-ms:2000}") long connectTimeoutMs,
+                                 @Value("${cpu-service.http-client.read-timeout-ms:30000}") long readTimeoutMs,
+                                 @Value("${cpu-service.http-client.max-in-flight:64}") int maxInFlight,
+                                 @Value("${cpu-service.http-client.acquire-timeout-ms:1000}") long acquireTimeoutMs) {
+        this.objectMapper = objectMapper;
+        this.codec = codec;
+        this.wireFormatNegotiator = wireFormatNegotiator;
+        this.calculateUri = URI.create(cpuServiceUrl + "/api/calculate");
+        this.readTimeout = Duration.ofMillis(readTimeoutMs);
+        this.inFlight = new AsyncSemaphore(maxInFlight);
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.httpClient = HttpClient.newBuilder()
+                .version(version)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+        
+        Gauge.builder("cpu.client.in-flight", inFlight, AsyncSemaphore::inUse).register(meterRegistry);
+        Gauge.builder("cpu.client.queued", inFlight, AsyncSemaphore::queued).register(meterRegistry);
+    }
+    
+    /**
+     * A non-null deadline is forwarded as the remaining budget and caps the read timeout.
+     * Without a free permit the call is queued; if none is released within
+     * acquire-timeout-ms the future fails with RejectedExecutionException. Cancelling the
+     * returned future (or completing it, e.g. by orTimeout) while it is queued withdraws the
+     * acquire, and a permit granted in the meantime is released.
+     */
+    public CompletableFuture<RecommendationResponse> calculateRecommendationsAsync(RecommendationRequest request,
+                                                                                 Deadline deadline) {
+        CompletableFuture<Void> permit = inFlight.acquire(acquireTimeoutMs);
+        // The permit belongs to whoever claims it first: the exchange once the permit is
+        // granted, or the caller giving up on the result before that
+        AtomicBoolean claimed = new AtomicBoolean();
+        CompletableFuture<RecommendationResponse> result = permit.thenCompose(granted -> {
+            if (!claimed.compareAndSet(false, true)) {
+                return CompletableFuture.failedFuture(new CancellationException("Caller gave up while queued"));
+            }
+            CompletableFuture<RecommendationResponse> response;
+            try {
+                response = exchange(request, deadline);
+            } catch (RuntimeException e) {
+                response = CompletableFuture.failedFuture(e);
+            }
+            return response.whenComplete((ignored, error) -> inFlight.release());
+        });
+        result.whenComplete((ignored, error) -> {
+            if (claimed.compareAndSet(false, true) && !permit.cancel(false) && !permit.isCompletedExceptionally()) {
+                inFlight.release();
+            }
+        });
+        return result;
+    }
+    
+    /**
+     * Blocking variant for callers that need the result on their own thread: the request is
+     * sent with HttpClient.send instead of waiting on a future, and the call is rejected with
+     * RejectedExecutionException right away when all permits are in use.
+     */
+    public RecommendationResponse calculateRecommendations(RecommendationRequest request, Deadline deadline) {
+        if (!inFlight.tryAcquire()) {
+            throw new RejectedExecutionException("CPU service client has all permits in flight");
+        }
+        try {
+            long startTime = System.currentTimeMillis();
+            boolean binary = wireFormatNegotiator.useBinary();
+            HttpResponse<byte[]> response = sendBlocking(request, binary, deadline);
+            if (binary && response.statusCode() == 415) {
+                wireFormatNegotiator.binaryRejected();
+                response = sendBlocking(request, false, deadline);
+            }
+            logger.info("CPU service responded in {} ms", System.currentTimeMillis() - startTime);
+            return readResponse(response);
+        } finally {
+            inFlight.release();
+        }
+    }
+    
+    private CompletableFuture<RecommendationResponse> exchange(RecommendationRequest request, Deadline deadline) {
+        long startTime = System.currentTimeMillis();
+        boolean binary = wireFormatNegotiator.useBinary();
+        return send(request, binary, deadline)
+                .thenCompose(response -> {
+                    if (binary && response.statusCode() == 415) {
+                        wireFormatNegotiator.binaryRejected();
+                        return send(request, false, deadline);
+                    }
+                    return CompletableFuture.completedFuture(response);
+                })
+                .thenApply(response -> {
+                    logger.info("CPU service responded in {} ms", System.currentTimeMillis() - startTime);
+                    return readResponse(response);
+                });
+    }
+    
+    private CompletableFuture<HttpResponse<byte[]>> send(RecommendationRequest request, boolean binary, Deadline deadline) {
+        HttpRequest httpRequest;
+        try {
+            httpRequest = buildRequest(request, binary, deadline);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofByteArray());
+    }
+    
+    private HttpResponse<byte[]> sendBlocking(RecommendationRequest request, boolean binary, Deadline deadline) {
+        try {
+            return httpClient.send(buildRequest(request, binary, deadline), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while calling the CPU service", e);
+        }
+    }
+    
+    private HttpRequest buildRequest(RecommendationRequest request, boolean binary, Deadline deadline) throws IOException {
+        byte[] body = binary ? codec.encode(request) : objectMapper.writeValueAsBytes(request);
+        
+        HttpRequest.Builder httpRequest = HttpRequest.newBuilder(calculateUri)
+                .timeout(readTimeout)
+                .header("Content-Type", binary ? WireFormat.MEDIA_TYPE_VALUE : "application/json")
+                .header("Accept", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        if (deadline != null) {
+            long remainingMs = Math.max(1, deadline.remainingMillis());
+            httpRequest.header(Deadline.HEADER, String.valueOf(remainingMs))
+                    .timeout(Duration.ofMillis(Math.min(readTimeout.toMillis(), remainingMs)));
+        }
+        return httpRequest.build();
+    }
+    
+    private RecommendationResponse readResponse(HttpResponse<byte[]> response) {
+        if (response.statusCode() == 504) {
+            throw new DeadlineExceededException("CPU service abandoned the calculation at the deadline");
+        }
+        if (response.statusCode() / 100 != 2) {
+            throw new RuntimeException("CPU service responded with status " + response.statusCode());
+        }
+        try {
+            return objectMapper.readValue(response.body(), RecommendationResponse.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
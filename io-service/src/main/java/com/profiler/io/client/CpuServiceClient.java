@@ -1,19 +1,33 @@
 package com.profiler.io.client;
 
+import com.profiler.io.codec.WireFormat;
+import com.profiler.io.codec.WireFormatNegotiator;
 import com.profiler.io.model.RecommendationRequest;
 import com.profiler.io.model.RecommendationResponse;
+import com.profiler.io.util.AdaptiveConcurrencyLimiter;
+import com.profiler.io.util.Deadline;
+import com.profiler.io.util.DeadlineExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.opentelemetry.instrumentation.annotations.WithSpan;
 import io.opentelemetry.instrumentation.annotations.SpanAttribute;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.List;
+import java.util.function.Supplier;
+
 @Component
 public class CpuServiceClient {
     
@@ -21,11 +35,35 @@ public class CpuServiceClient {
     
     private final RestTemplate restTemplate;
     private final String cpuServiceUrl;
+    private final AsyncCpuServiceClient asyncClient;
+    private final boolean useAsyncClient;
+    private final WireFormatNegotiator wireFormatNegotiator;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final Counter deadlineExceeded;
     
     public CpuServiceClient(RestTemplate restTemplate,
-                            @Value("${cpu-service.url}") String cpuServiceUrl) {
+                            @Value("${cpu-service.url}") String cpuServiceUrl,
+                            AsyncCpuServiceClient asyncClient,
+                            @Value("${cpu-service.http-client.enabled:false}") boolean useAsyncClient,
+                            WireFormatNegotiator wireFormatNegotiator,
+                            MeterRegistry meterRegistry,
+                            @Value("${concurrency-limit.cpu-client.enabled:false}") boolean limitEnabled,
+                            @Value("${concurrency-limit.cpu-client.initial-limit:20}") int initialLimit,
+                            @Value("${concurrency-limit.cpu-client.min-limit:2}") int minLimit,
+                            @Value("${concurrency-limit.cpu-client.max-limit:200}") int maxLimit,
+                            @Value("${concurrency-limit.tolerance:2.0}") double tolerance,
+                            @Value("${concurrency-limit.backoff-ratio:0.9}") double backoffRatio,
+                            @Value("${concurrency-limit.baseline-window-seconds:30}") long baselineWindowSeconds) {
         this.restTemplate = restTemplate;
         this.cpuServiceUrl = cpuServiceUrl;
+        this.asyncClient = asyncClient;
+        this.useAsyncClient = useAsyncClient;
+        this.wireFormatNegotiator = wireFormatNegotiator;
+        this.concurrencyLimiter = limitEnabled
+                ? new AdaptiveConcurrencyLimiter(meterRegistry, "cpu.client.concurrency", initialLimit, minLimit, maxLimit,
+                                                 tolerance, backoffRatio, baselineWindowSeconds)
+                : null;
+        this.deadlineExceeded = Counter.builder("cpu.client.deadline.exceeded").register(meterRegistry);
     }
     
     @WithSpan("CpuServiceClient.calculateRecommendations")
@@ -34,23 +72,130 @@ public class CpuServiceClient {
                     request.getCustomerId(), 
                     request.getDevices() != null ? request.getDevices().size() : 0);
         
+        return limited(() -> calculate(request));
+    }
+    
+    private RecommendationResponse calculate(RecommendationRequest request) {
+        Deadline deadline = checkDeadline();
+        if (useAsyncClient) {
+            try {
+                return asyncClient.calculateRecommendations(request, deadline);
+            } catch (DeadlineExceededException e) {
+                deadlineExceeded.increment();
+                throw e;
+            }
+        }
+        
         String url = cpuServiceUrl + "/api/calculate";
         
+        long startTime = System.currentTimeMillis();
+        ResponseEntity<RecommendationResponse> response;
+        try {
+            if (wireFormatNegotiator.useBinary()) {
+                try {
+                    response = post(url, request, WireFormat.MEDIA_TYPE, deadline);
+                } catch (HttpClientErrorException.UnsupportedMediaType e) {
+                    wireFormatNegotiator.binaryRejected();
+                    response = post(url, request, MediaType.APPLICATION_JSON, deadline);
+                }
+            } else {
+                response = post(url, request, MediaType.APPLICATION_JSON, deadline);
+            }
+        } catch (HttpServerErrorException.GatewayTimeout e) {
+            deadlineExceeded.increment();
+            throw new DeadlineExceededException("CPU service abandoned the calculation at the deadline");
+        }
+        long duration = System.currentTimeMillis() - startTime;
+        
+        logger.info("CPU service responded in {} ms", duration);
+        
+        return response.getBody();
+    }
+    
+    @WithSpan("CpuServiceClient.calculateBatchRecommendations")
+    public List<RecommendationResponse> calculateBatchRecommendations(List<RecommendationRequest> requests) {
+        logger.info("Calling CPU service batch endpoint for {} customers", requests.size());
+        
+        String url = cpuServiceUrl + "/api/calculate/batch";
+        
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
+        setBudget(headers, checkDeadline());
+        
+        long startTime = System.currentTimeMillis();
+        ResponseEntity<List<RecommendationResponse>> response;
+        try {
+            response = restTemplate.exchange(
+                    url,
+                    HttpMethod.POST,
+                    new HttpEntity<>(requests, headers),
+                    new ParameterizedTypeReference<List<RecommendationResponse>>() {}
+            );
+        } catch (HttpServerErrorException.GatewayTimeout e) {
+            deadlineExceeded.increment();
+            throw new DeadlineExceededException("CPU service abandoned the batch at the deadline");
+        }
+        long duration = System.currentTimeMillis() - startTime;
+        
+        logger.info("CPU service batch of {} responded in {} ms", requests.size(), duration);
+        
+        return response.getBody();
+    }
+    
+    /**
+     * Runs a single-customer call under the adaptive concurrency limit, failing fast when it
+     * is reached. Batch calls are not limited: their latency grows with the batch size and
+     * would distort the latency baseline.
+     */
+    private <T> T limited(Supplier<T> call) {
+        if (concurrencyLimiter == null) {
+            return call.get();
+        }
+        AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter.tryAcquire();
+        if (permit == null) {
+            throw new CpuServiceOverloadedException(
+                    "CPU service concurrency limit of " + concurrencyLimiter.getLimit() + " reached");
+        }
+        boolean dropped = true;
+        try {
+            T result = call.get();
+            dropped = false;
+            return result;
+        } finally {
+            permit.release(dropped);
+        }
+    }
+    
+    /**
+     * Fails without calling the CPU service when the request's budget is already spent
+     */
+    private Deadline checkDeadline() {
+        Deadline deadline = Deadline.current();
+        if (deadline != null && deadline.isExpired()) {
+            deadlineExceeded.increment();
+            throw new DeadlineExceededException("Request deadline passed before calling the CPU service");
+        }
+        return deadline;
+    }
+    
+    private static void setBudget(HttpHeaders headers, Deadline deadline) {
+        if (deadline != null) {
+            headers.set(Deadline.HEADER, String.valueOf(deadline.remainingMillis()));
+        }
+    }
+    
+    private ResponseEntity<RecommendationResponse> post(String url, RecommendationRequest request,
+                                                        MediaType contentType, Deadline deadline) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(contentType);
+        setBudget(headers, deadline);
         
         HttpEntity<RecommendationRequest> entity = new HttpEntity<>(request, headers);
         
-        long startTime = System.currentTimeMillis();
-        ResponseEntity<RecommendationResponse> response = restTemplate.postForEntity(
+        return restTemplate.postForEntity(
                 url, 
                 entity, 
                 RecommendationResponse.class
         );
-        long duration = System.currentTimeMillis() - startTime;
-        
-        logger.info("CPU service responded in {} ms", duration);
-        
-        return response.getBody();
     }
 }
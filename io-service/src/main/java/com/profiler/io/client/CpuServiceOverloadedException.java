@@ -0,0 +1,11 @@
+package com.profiler.io.client;
+
+/**
+ * Thrown when a call to the CPU service is rejected by the client-side concurrency limit
+ */
+public class CpuServiceOverloadedException extends RuntimeException {
+    
+    public CpuServiceOverloadedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,35 @@
+package com.profiler.io.codec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decides whether requests to cpu-service are sent in the binary wire format.
+ * Falls back to JSON for the rest of the process lifetime once cpu-service
+ * rejects the binary media type.
+ */
+@Component
+public class WireFormatNegotiator {
+    
+    private static final Logger logger = LoggerFactory.getLogger(WireFormatNegotiator.class);
+    
+    private final boolean binaryEnabled;
+    private volatile boolean binaryRejected = false;
+    
+    public WireFormatNegotiator(@Value("${cpu-service.binary-wire.enabled:false}") boolean binaryEnabled) {
+        this.binaryEnabled = binaryEnabled;
+    }
+    
+    public boolean useBinary() {
+        return binaryEnabled && !binaryRejected;
+    }
+    
+    public void binaryRejected() {
+        if (!binaryRejected) {
+            logger.warn("CPU service does not accept {}, falling back to JSON", WireFormat.MEDIA_TYPE_VALUE);
+            binaryRejected = true;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.profiler.io.codec;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Low-level reader for the binary wire format, see {@link WireWriter}
+ */
+public class WireReader {
+    
+    private final InputStream in;
+    private final List<String> dictionary = new ArrayList<>();
+    
+    public WireReader(InputStream in) {
+        this.in = in;
+    }
+    
+    public int readByte() throws IOException {
+        int value = in.read();
+        if (value < 0) {
+            throw new EOFException("Unexpected end of binary payload");
+        }
+        return value;
+    }
+    
+    public long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in binary payload");
+    }
+    
+    public long readSignedVarLong() throws IOException {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
+    public int readVarInt() throws IOException {
+        return Math.toIntExact(readVarLong());
+    }
+    
+    public String readString() throws IOException {
+        long reference = readVarLong();
+        if (reference == WireFormat.STRING_NULL) {
+            return null;
+        }
+        if (reference == WireFormat.STRING_LITERAL) {
+            int length = readVarInt();
+            byte[] bytes = in.readNBytes(length);
+            if (bytes.length != length) {
+                throw new EOFException("Unexpected end of binary payload");
+            }
+            String value = new String(bytes, StandardCharsets.UTF_8);
+            dictionary.add(value);
+            return value;
+        }
+        int index = Math.toIntExact(reference - WireFormat.STRING_FIRST_REFERENCE);
+        if (index >= dictionary.size()) {
+            throw new IOException("Unknown string reference " + index + " in binary payload");
+        }
+        return dictionary.get(index);
+    }
+}
@@ -0,0 +1,85 @@
+package com.profiler.io.controller;
+
+import com.profiler.io.util.AdaptiveConcurrencyLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Sheds single-customer recommendation requests beyond the adaptive concurrency limit
+ * with 503 and Retry-After, instead of letting them queue for a database connection.
+ * Batch requests are not limited: one of them costs as much as many single requests.
+ * Responses with a 5xx status count as dropped and lower the limit.
+ */
+@Component
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+    
+    private static final String LIMITED_PATH_PREFIX = "/api/recommendations/";
+    private static final String BATCH_PATH = "/api/recommendations/batch";
+    
+    private final boolean enabled;
+    private final long retryAfterSeconds;
+    private final AdaptiveConcurrencyLimiter limiter;
+    
+    public ConcurrencyLimitFilter(MeterRegistry meterRegistry,
+                                  @Value("${concurrency-limit.server.enabled:false}") boolean enabled,
+                                  @Value("${concurrency-limit.server.initial-limit:20}") int initialLimit,
+                                  @Value("${concurrency-limit.server.min-limit:4}") int minLimit,
+                                  @Value("${concurrency-limit.server.max-limit:200}") int maxLimit,
+                                  @Value("${concurrency-limit.tolerance:2.0}") double tolerance,
+                                  @Value("${concurrency-limit.backoff-ratio:0.9}") double backoffRatio,
+                                  @Value("${concurrency-limit.baseline-window-seconds:30}") long baselineWindowSeconds,
+                                  @Value("${concurrency-limit.retry-after-seconds:1}") long retryAfterSeconds) {
+        this.enabled = enabled;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.limiter = enabled
+                ? new AdaptiveConcurrencyLimiter(meterRegistry, "http.server.concurrency", initialLimit, minLimit, maxLimit,
+                                                 tolerance, backoffRatio, baselineWindowSeconds)
+                : null;
+    }
+    
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !isLimited(request.getRequestURI());
+    }
+    
+    /**
+     * /api/recommendations/{customerId} only
+     */
+    static boolean isLimited(String path) {
+        if (!path.startsWith(LIMITED_PATH_PREFIX) || path.equals(BATCH_PATH)) {
+            return false;
+        }
+        String customerId = path.substring(LIMITED_PATH_PREFIX.length());
+        return !customerId.isEmpty() && customerId.indexOf('/') < 0;
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire();
+        if (permit == null) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            return;
+        }
+        
+        boolean dropped = true;
+        try {
+            filterChain.doFilter(request, response);
+            dropped = response.getStatus() >= 500;
+        } finally {
+            permit.release(dropped);
+        }
+    }
+}
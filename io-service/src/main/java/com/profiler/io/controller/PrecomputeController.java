@@ -0,0 +1,40 @@
+package com.profiler.io.controller;
+
+import com.profiler.io.model.PrecomputeStatus;
+import com.profiler.io.service.PrecomputeService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Starts precompute runs and reports their progress
+ */
+@RestController
+@RequestMapping("/api/precompute")
+public class PrecomputeController {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PrecomputeController.class);
+    
+    private final PrecomputeService precomputeService;
+    
+    public PrecomputeController(PrecomputeService precomputeService) {
+        this.precomputeService = precomputeService;
+    }
+    
+    @PostMapping
+    public ResponseEntity<PrecomputeStatus> start(@RequestParam(defaultValue = "false") boolean force) {
+        PrecomputeStatus status = precomputeService.start(force);
+        if (status == null) {
+            logger.info("Precompute run requested while another run is in progress");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(precomputeService.status());
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(status);
+    }
+    
+    @GetMapping("/status")
+    public ResponseEntity<PrecomputeStatus> status() {
+        return ResponseEntity.ok(precomputeService.status());
+    }
+}
@@ -1,12 +1,22 @@
 package com.profiler.io.controller;
 
+import com.profiler.io.client.CpuServiceOverloadedException;
 import com.profiler.io.model.RecommendationResponse;
 import com.profiler.io.service.RecommendationService;
+import com.profiler.io.service.WorkRejectedException;
+import com.profiler.io.util.Deadline;
+import com.profiler.io.util.DeadlineExceededException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * Level 1: REST Controller
  * Entry point for recommendation requests
@@ -18,24 +28,72 @@ public class RecommendationController {
     private static final Logger logger = LoggerFactory.getLogger(RecommendationController.class);
     
     private final RecommendationService recommendationService;
+    private final int maxBatchCustomers;
+    private final long retryAfterSeconds;
+    private final long defaultBudgetMs;
     
-    public RecommendationController(RecommendationService recommendationService) {
+    public RecommendationController(RecommendationService recommendationService,
+                                    @Value("${recommendations.batch.max-customers:5000}") int maxBatchCustomers,
+                                    @Value("${concurrency-limit.retry-after-seconds:1}") long retryAfterSeconds,
+                                    @Value("${deadline.default-budget-ms:0}") long defaultBudgetMs) {
         this.recommendationService = recommendationService;
+        this.maxBatchCustomers = maxBatchCustomers;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.defaultBudgetMs = defaultBudgetMs;
     }
     
     @PostMapping("/recommendations/{customerId}")
-    public ResponseEntity<RecommendationResponse> getRecommendations(@PathVariable Long customerId) {
+    public ResponseEntity<RecommendationResponse> getRecommendations(@PathVariable Long customerId,
+                                                                     @RequestParam(defaultValue = "false") boolean forceRecompute,
+                                                                     @RequestHeader(value = Deadline.HEADER, required = false) Long budgetMs) {
         logger.info("Received recommendation request for customer {}", customerId);
         
         try {
-            RecommendationResponse response = recommendationService.getRecommendations(customerId);
+            RecommendationResponse response = Deadline.callWith(deadline(budgetMs),
+                    () -> recommendationService.getRecommendations(customerId, forceRecompute));
             return ResponseEntity.ok(response);
+        } catch (DeadlineExceededException e) {
+            logger.warn("Deadline exceeded for customer {}: {}", customerId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build();
+        } catch (CpuServiceOverloadedException | WorkRejectedException | RejectedExecutionException e) {
+            logger.warn("Shedding recommendation request for customer {}: {}", customerId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                    .build();
         } catch (RuntimeException e) {
             logger.error("Error processing recommendation for customer {}: {}", customerId, e.getMessage());
             return ResponseEntity.notFound().build();
         }
     }
     
+    @PostMapping("/recommendations/batch")
+    public ResponseEntity<List<RecommendationResponse>> getBatchRecommendations(@RequestBody List<Long> customerIds,
+                                                                                @RequestHeader(value = Deadline.HEADER, required = false) Long budgetMs) {
+        logger.info("Received batch recommendation request for {} customers",
+                    customerIds != null ? customerIds.size() : 0);
+        
+        if (customerIds == null || customerIds.isEmpty() || customerIds.size() > maxBatchCustomers) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        try {
+            List<RecommendationResponse> responses = Deadline.callWith(deadline(budgetMs),
+                    () -> recommendationService.getBatchRecommendations(customerIds));
+            return ResponseEntity.ok(responses);
+        } catch (DeadlineExceededException e) {
+            logger.warn("Deadline exceeded for batch of {} customers: {}", customerIds.size(), e.getMessage());
+            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build();
+        }
+    }
+    
+    /**
+     * The client's budget from the request header, else the configured default (0 = none)
+     */
+    private Deadline deadline(Long budgetMs) {
+        long budget = budgetMs != null ? budgetMs : defaultBudgetMs;
+        return budget > 0 ? Deadline.afterMillis(budget) : null;
+    }
+    
     @GetMapping("/health")
     public ResponseEntity<String> health() {
         return ResponseEntity.ok("IO Service is healthy");
@@ -0,0 +1,56 @@
+package com.profiler.io.controller;
+
+import com.profiler.io.cache.CustomerSnapshotCache;
+import com.profiler.io.cache.SnapshotFileStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Invalidation endpoints for the customer snapshot cache and the on-disk snapshot store.
+ * The store is invalidated first: the cache loads through the store, so the other order
+ * lets a concurrent miss refill the cache from the old file.
+ */
+@RestController
+@RequestMapping("/api/cache")
+public class SnapshotCacheController {
+    
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotCacheController.class);
+    
+    private final CustomerSnapshotCache snapshotCache;
+    private final SnapshotFileStore snapshotStore;
+    
+    public SnapshotCacheController(CustomerSnapshotCache snapshotCache, SnapshotFileStore snapshotStore) {
+        this.snapshotCache = snapshotCache;
+        this.snapshotStore = snapshotStore;
+    }
+    
+    @DeleteMapping("/customers/{customerId}")
+    public ResponseEntity<Void> invalidateCustomer(@PathVariable Long customerId) {
+        boolean removed = snapshotStore.invalidate(customerId);
+        removed |= snapshotCache.invalidate(customerId);
+        logger.info("Invalidated snapshot for customer {} (present: {})", customerId, removed);
+        return removed ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+    
+    @DeleteMapping("/customers")
+    public ResponseEntity<Map<String, Integer>> invalidateAll() {
+        int removedFromStore = snapshotStore.invalidateAll();
+        int removed = snapshotCache.invalidateAll();
+        logger.info("Invalidated {} cached and {} stored snapshots", removed, removedFromStore);
+        return ResponseEntity.ok(Map.of("invalidated", removed, "invalidatedFromStore", removedFromStore));
+    }
+    
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> stats() {
+        return ResponseEntity.ok(Map.of(
+                "enabled", snapshotCache.isEnabled(),
+                "size", snapshotCache.size(),
+                "weight", snapshotCache.weight(),
+                "storeEnabled", snapshotStore.isEnabled()
+        ));
+    }
+}
@@ -15,4 +15,13 @@ public class CustomerContext {
     private String customerType;
     private Integer totalBuildings;
     private Integer totalDevices;
+    
+    /**
+     * Used by JPQL constructor expressions; totals are filled in after loading
+     */
+    public CustomerContext(Long id, String name, String customerType) {
+        this.id = id;
+        this.name = name;
+        this.customerType = customerType;
+    }
 }
@@ -44,4 +44,19 @@ public class Device {
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "building_id", nullable = false)
     private Building building;
+    
+    @Column(name = "customer_id", nullable = false)
+    private Long customerId; // denormalized from building, checked by a trigger
+    
+    /**
+     * Copies the customer of the building. A partitioned devices table routes rows by
+     * customer_id before any trigger runs, so the entity has to supply it itself.
+     */
+    @PrePersist
+    @PreUpdate
+    void deriveCustomerId() {
+        if (building != null && building.getCustomer() != null) {
+            customerId = building.getCustomer().getId();
+        }
+    }
 }
@@ -0,0 +1,219 @@
+package com.profiler.io.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Columnar (struct-of-arrays) representation of a customer's devices.
+ * Numeric columns are primitive arrays and repeated strings are dictionary
+ * encoded, so a device costs a few dozen bytes instead of a DeviceContext
+ * with boxed fields and its own String instances. Columns are kept in fixed-size
+ * chunks, so filling a snapshot never grows or copies an array.
+ */
+public final class DeviceSnapshot {
+    
+    private static final int NO_POWER = Integer.MIN_VALUE;
+    private static final int CHUNK_SHIFT = 8;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    
+    private final int size;
+    private final Chunk[] chunks;
+    
+    private final String[] types;
+    private final String[] manufacturers;
+    private final String[] models;
+    private final String[] statuses;
+    
+    private DeviceSnapshot(Builder builder) {
+        this.size = builder.size;
+        this.chunks = builder.chunks.toArray(new Chunk[0]);
+        this.types = builder.types.toArray();
+        this.manufacturers = builder.manufacturers.toArray();
+        this.models = builder.models.toArray();
+        this.statuses = builder.statuses.toArray();
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public long id(int index) {
+        return chunk(index).ids[index & CHUNK_MASK];
+    }
+    
+    public boolean hasPowerConsumption(int index) {
+        return chunk(index).powerConsumptions[index & CHUNK_MASK] != NO_POWER;
+    }
+    
+    public int powerConsumption(int index) {
+        return chunk(index).powerConsumptions[index & CHUNK_MASK];
+    }
+    
+    public int typeCode(int index) {
+        return chunk(index).typeCodes[index & CHUNK_MASK] & 0xFF;
+    }
+    
+    public String deviceType(int index) {
+        return types[typeCode(index)];
+    }
+    
+    public String manufacturer(int index) {
+        return manufacturers[chunk(index).manufacturerCodes[index & CHUNK_MASK] & 0xFFFF];
+    }
+    
+    public String modelNumber(int index) {
+        return models[chunk(index).modelCodes[index & CHUNK_MASK]];
+    }
+    
+    public String status(int index) {
+        return statuses[chunk(index).statusCodes[index & CHUNK_MASK] & 0xFF];
+    }
+    
+    /**
+     * Distinct device types, indexed by type code
+     */
+    public String[] deviceTypes() {
+        return types.clone();
+    }
+    
+    /**
+     * Read-only list view over the snapshot. Each element is created on access and not
+     * retained, so a request can carry the devices without a DeviceContext per device;
+     * the binary codec recognises the view and encodes the columns directly.
+     */
+    public List<DeviceContext> asDeviceContexts() {
+        return new DeviceContextView(this);
+    }
+    
+    public DeviceContext toDeviceContext(int index) {
+        return DeviceContext.builder()
+                .id(id(index))
+                .deviceType(deviceType(index))
+                .manufacturer(manufacturer(index))
+                .modelNumber(modelNumber(index))
+                .powerConsumption(hasPowerConsumption(index) ? powerConsumption(index) : null)
+                .status(status(index))
+                .build();
+    }
+    
+    /**
+     * Approximate retained heap of the snapshot, for footprint logging
+     */
+    public long estimatedSizeBytes() {
+        long columns = (long) chunks.length * CHUNK_SIZE * (8L + 4L + 1L + 2L + 4L + 1L);
+        long dictionaries = 40L * (types.length + manufacturers.length + models.length + statuses.length);
+        return columns + dictionaries;
+    }
+    
+    private Chunk chunk(int index) {
+        return chunks[index >>> CHUNK_SHIFT];
+    }
+    
+    public static final class DeviceContextView extends AbstractList<DeviceContext> implements RandomAccess {
+        
+        private final DeviceSnapshot snapshot;
+        
+        private DeviceContextView(DeviceSnapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+        
+        public DeviceSnapshot snapshot() {
+            return snapshot;
+        }
+        
+        @Override
+        public DeviceContext get(int index) {
+            Objects.checkIndex(index, snapshot.size);
+            return snapshot.toDeviceContext(index);
+        }
+        
+        @Override
+        public int size() {
+            return snapshot.size;
+        }
+    }
+    
+    public static final class Builder {
+        
+        private int size = 0;
+        private final List<Chunk> chunks = new ArrayList<>();
+        
+        private final Dictionary types = new Dictionary(0xFF);
+        private final Dictionary manufacturers = new Dictionary(0xFFFF);
+        private final Dictionary models = new Dictionary(Integer.MAX_VALUE);
+        private final Dictionary statuses = new Dictionary(0xFF);
+        
+        private Builder() {
+        }
+        
+        public Builder add(long id, String deviceType, String manufacturer, String modelNumber,
+                           Integer powerConsumption, String status) {
+            int offset = size & CHUNK_MASK;
+            if (offset == 0) {
+                chunks.add(new Chunk());
+            }
+            Chunk chunk = chunks.get(chunks.size() - 1);
+            chunk.ids[offset] = id;
+            chunk.powerConsumptions[offset] = powerConsumption != null ? powerConsumption : NO_POWER;
+            chunk.typeCodes[offset] = (byte) types.code(deviceType);
+            chunk.manufacturerCodes[offset] = (short) manufacturers.code(manufacturer);
+            chunk.modelCodes[offset] = models.code(modelNumber);
+            chunk.statusCodes[offset] = (byte) statuses.code(status);
+            size++;
+            return this;
+        }
+        
+        public DeviceSnapshot build() {
+            return new DeviceSnapshot(this);
+        }
+    }
+    
+    private static final class Chunk {
+        
+        private final long[] ids = new long[CHUNK_SIZE];
+        private final int[] powerConsumptions = new int[CHUNK_SIZE];
+        private final byte[] typeCodes = new byte[CHUNK_SIZE];
+        private final short[] manufacturerCodes = new short[CHUNK_SIZE];
+        private final int[] modelCodes = new int[CHUNK_SIZE];
+        private final byte[] statusCodes = new byte[CHUNK_SIZE];
+    }
+    
+    private static final class Dictionary {
+        
+        private final int maxCode;
+        private final List<String> values = new ArrayList<>();
+        private final Map<String, Integer> codes = new HashMap<>();
+        
+        private Dictionary(int maxCode) {
+            this.maxCode = maxCode;
+        }
+        
+        private int code(String value) {
+            Integer code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            if (values.size() > maxCode) {
+                throw new IllegalStateException("Dictionary overflow: more than " + (maxCode + 1) + " distinct values");
+            }
+            int newCode = values.size();
+            values.add(value);
+            codes.put(value, newCode);
+            return newCode;
+        }
+        
+        private String[] toArray() {
+            return values.toArray(new String[0]);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.profiler.io.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Aggregated statistics of one device type of a customer, sent instead of
+ * the raw device list when per-device detail is not needed
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeviceTypeSummary {
+    private String deviceType;
+    private Integer deviceCount;
+    private Integer poweredDeviceCount;
+    private Long totalPowerConsumption;
+    private Integer minPowerConsumption;
+    private Integer maxPowerConsumption;
+    private Map<String, Integer> statusCounts;
+}
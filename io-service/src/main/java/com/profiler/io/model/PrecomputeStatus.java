@@ -0,0 +1,28 @@
+package com.profiler.io.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PrecomputeStatus {
+    private Long runId;
+    private Boolean running;
+    private Boolean force;
+    private Instant startedAt;
+    private Instant finishedAt;
+    private Long totalCustomers;
+    private Long processedCustomers;
+    private Long computedCustomers;
+    private Long skippedCustomers;
+    private Long failedCustomers;
+    private Double customersPerSecond;
+    private Integer storedRecommendations;
+    private String lastError;
+}
@@ -0,0 +1,10 @@
+package com.profiler.io.model;
+
+/**
+ * Whether a response was computed for the request (or is within the fresh window)
+ * or is an older stored result served to keep latency down
+ */
+public enum RecommendationFreshness {
+    FRESH,
+    STALE
+}
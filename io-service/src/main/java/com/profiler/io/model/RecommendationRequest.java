@@ -1,10 +1,13 @@
 package com.profiler.io.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 
+import java.time.Instant;
 import java.util.List;
 
 @Data
@@ -14,6 +17,15 @@ import java.util.List;
 public class RecommendationRequest {
     private Long customerId;
     private List<DeviceContext> devices;
+    private List<DeviceTypeSummary> deviceSummaries;
     private List<BuildingContext> buildings;
     private CustomerContext customer;
+    
+    /**
+     * When the data was read from the database, taken before the first query.
+     * Not sent to cpu-service and not part of equality.
+     */
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private Instant loadedAt;
 }
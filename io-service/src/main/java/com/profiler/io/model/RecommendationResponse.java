@@ -5,10 +5,11 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.Instant;
 import java.util.List;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class RecommendationResponse {
@@ -17,4 +18,6 @@ public class RecommendationResponse {
     private String calculationMethod;
     private Long calculationTimeMs;
     private Integer totalDevicesAnalyzed;
+    private Instant computedAt;
+    private RecommendationFreshness freshness;
 }
@@ -1,11 +1,13 @@
 package com.profiler.io.repository;
 
 import com.profiler.io.model.Building;
+import com.profiler.io.model.BuildingContext;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -16,4 +18,27 @@ public interface BuildingRepository extends JpaRepository<Building, Long> {
     
     @Query("SELECT b FROM Building b LEFT JOIN FETCH b.devices WHERE b.customer.id = :customerId")
     List<Building> findByCustomerIdWithDevices(@Param("customerId") Long customerId);
+    
+    @Query("SELECT new com.profiler.io.model.BuildingContext(b.id, b.buildingType, b.squareMeters, CAST(COUNT(d.id) AS Integer)) " +
+           "FROM Building b LEFT JOIN b.devices d WHERE b.customer.id = :customerId " +
+           "GROUP BY b.id, b.buildingType, b.squareMeters ORDER BY b.id")
+    List<BuildingContext> findContextsWithDeviceCountsByCustomerId(@Param("customerId") Long customerId);
+    
+    /**
+     * Rows of [customerId, buildingId, buildingType, squareMeters, deviceCount]
+     */
+    @Query("SELECT b.customer.id, b.id, b.buildingType, b.squareMeters, COUNT(d.id) " +
+           "FROM Building b LEFT JOIN b.devices d WHERE b.customer.id IN :customerIds " +
+           "GROUP BY b.customer.id, b.id, b.buildingType, b.squareMeters ORDER BY b.id")
+    List<Object[]> findDeviceCountsByCustomerIds(@Param("customerIds") Collection<Long> customerIds);
+    
+    /**
+     * Rows of [buildingId, buildingType, squareMeters, deviceCount] read from the
+     * trigger-maintained building_device_summary table, without touching devices
+     */
+    @Query(value = "SELECT b.id, b.building_type, b.square_meters, COALESCE(s.device_count, 0) " +
+                   "FROM buildings b LEFT JOIN building_device_summary s ON s.building_id = b.id " +
+                   "WHERE b.customer_id = :customerId ORDER BY b.id",
+           nativeQuery = true)
+    List<Object[]> findSummariesByCustomerId(@Param("customerId") Long customerId);
 }
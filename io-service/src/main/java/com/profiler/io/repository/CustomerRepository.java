@@ -1,11 +1,15 @@
 package com.profiler.io.repository;
 
 import com.profiler.io.model.Customer;
+import com.profiler.io.model.CustomerContext;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -15,4 +19,29 @@ public interface CustomerRepository extends JpaRepository<Customer, Long> {
     Optional<Customer> findByIdWithBuildings(@Param("id") Long id);
     
     Optional<Customer> findByEmail(String email);
+    
+    /**
+     * Customer as a flat DTO, without creating a managed entity
+     */
+    @Query("SELECT new com.profiler.io.model.CustomerContext(c.id, c.name, c.customerType) FROM Customer c WHERE c.id = :id")
+    Optional<CustomerContext> findContextById(@Param("id") Long id);
+    
+    /**
+     * Keyset pagination over customer ids
+     */
+    @Query("SELECT c.id FROM Customer c WHERE c.id > :afterId ORDER BY c.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    /**
+     * Rows of [customerId, updatedAt, databaseNow] from the trigger-maintained customer_device_summary
+     * table; updatedAt moves on every device and building write of the customer. databaseNow is the
+     * database clock, of the same type as updatedAt, to compare it against times taken in the JVM.
+     */
+    @Query(value = "SELECT customer_id, updated_at, LOCALTIMESTAMP FROM customer_device_summary WHERE customer_id IN (:customerIds)",
+           nativeQuery = true)
+    List<Object[]> findDeviceUpdateTimes(@Param("customerIds") Collection<Long> customerIds);
+    
+    @Query(value = "SELECT device_count FROM customer_device_summary WHERE customer_id = :customerId",
+           nativeQuery = true)
+    Optional<Integer> findDeviceCount(@Param("customerId") Long customerId);
 }
@@ -0,0 +1,33 @@
+package com.profiler.io.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+
+/**
+ * Streams device rows through a forward-only JDBC cursor.
+ * PostgreSQL only honours the fetch size inside a transaction, so callers must
+ * run within one (otherwise the driver materializes the whole result set).
+ */
+@Repository
+public class DeviceCursorRepository {
+    
+    private static final String DEVICES_BY_CUSTOMER_SQL =
+            "SELECT d.id, d.device_type, d.manufacturer, d.model_number, d.power_consumption, d.status " +
+            "FROM devices d WHERE d.customer_id = ?";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public DeviceCursorRepository(DataSource dataSource,
+                                  @Value("${enrichment.cursor.fetch-size:500}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+    }
+    
+    public void streamByCustomerId(Long customerId, RowCallbackHandler rowHandler) {
+        jdbcTemplate.query(DEVICES_BY_CUSTOMER_SQL, rowHandler, customerId);
+    }
+}
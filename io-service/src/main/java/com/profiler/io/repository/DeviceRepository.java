@@ -1,11 +1,13 @@
 package com.profiler.io.repository;
 
 import com.profiler.io.model.Device;
+import com.profiler.io.model.DeviceContext;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -14,9 +16,40 @@ public interface DeviceRepository extends JpaRepository<Device, Long> {
     @Query("SELECT d FROM Device d WHERE d.building.id = :buildingId")
     List<Device> findByBuildingId(@Param("buildingId") Long buildingId);
     
-    @Query("SELECT d FROM Device d WHERE d.building.customer.id = :customerId")
+    @Query("SELECT d FROM Device d WHERE d.customerId = :customerId")
     List<Device> findByCustomerId(@Param("customerId") Long customerId);
     
-    @Query("SELECT COUNT(d) FROM Device d WHERE d.building.customer.id = :customerId")
+    /**
+     * Devices as flat DTOs straight from the result set, without managed entities
+     */
+    @Query("SELECT new com.profiler.io.model.DeviceContext(d.id, d.deviceType, d.manufacturer, d.modelNumber, d.powerConsumption, d.status) " +
+           "FROM Device d WHERE d.customerId = :customerId")
+    List<DeviceContext> findContextsByCustomerId(@Param("customerId") Long customerId);
+    
+    /**
+     * Rows of [customerId, device]
+     */
+    @Query("SELECT d.customerId, d FROM Device d WHERE d.customerId IN :customerIds")
+    List<Object[]> findByCustomerIds(@Param("customerIds") Collection<Long> customerIds);
+    
+    @Query("SELECT COUNT(d) FROM Device d WHERE d.customerId = :customerId")
     Long countByCustomerId(@Param("customerId") Long customerId);
+    
+    /**
+     * Rows of [deviceType, deviceCount, poweredDeviceCount, totalPowerConsumption]
+     * from the trigger-maintained customer_device_type_summary table
+     */
+    @Query(value = "SELECT device_type, device_count, powered_device_count, total_power_consumption " +
+                   "FROM customer_device_type_summary WHERE customer_id = :customerId AND device_count > 0",
+           nativeQuery = true)
+    List<Object[]> findTypeSummariesByCustomerId(@Param("customerId") Long customerId);
+    
+    /**
+     * Rows of [deviceType, status, deviceCount, poweredDeviceCount, totalPowerConsumption,
+     * minPowerConsumption, maxPowerConsumption], aggregated by the database
+     */
+    @Query("SELECT d.deviceType, d.status, COUNT(d), COUNT(d.powerConsumption), COALESCE(SUM(d.powerConsumption), 0), " +
+           "MIN(d.powerConsumption), MAX(d.powerConsumption) " +
+           "FROM Device d WHERE d.customerId = :customerId GROUP BY d.deviceType, d.status")
+    List<Object[]> aggregateByTypeAndStatus(@Param("customerId") Long customerId);
 }
@@ -2,17 +2,22 @@ package com.profiler.io.service;
 
 import com.profiler.io.model.*;
 import com.profiler.io.repository.BuildingRepository;
+import com.profiler.io.repository.DeviceCursorRepository;
 import com.profiler.io.repository.DeviceRepository;
 import com.profiler.io.util.DataMapper;
 import io.opentelemetry.instrumentation.annotations.WithSpan;
 import io.opentelemetry.instrumentation.annotations.SpanAttribute;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 /**
  * Level 5: Building Analysis Service
@@ -25,20 +30,33 @@ public class BuildingAnalysisService {
     
     private final BuildingRepository buildingRepository;
     private final DeviceRepository deviceRepository;
+    private final DeviceCursorRepository deviceCursorRepository;
     private final DataMapper dataMapper;
+    private final BuildingLoadStrategy buildingStrategy;
     
     public BuildingAnalysisService(BuildingRepository buildingRepository,
                                    DeviceRepository deviceRepository,
-                                   DataMapper dataMapper) {
+                                   DeviceCursorRepository deviceCursorRepository,
+                                   DataMapper dataMapper,
+                                   @Value("${enrichment.building-strategy:PER_BUILDING}") BuildingLoadStrategy buildingStrategy) {
         this.buildingRepository = buildingRepository;
         this.deviceRepository = deviceRepository;
+        this.deviceCursorRepository = deviceCursorRepository;
         this.dataMapper = dataMapper;
+        this.buildingStrategy = buildingStrategy;
     }
     
     @WithSpan("BuildingAnalysisService.analyzeBuildingsForCustomer")
     public List<BuildingContext> analyzeBuildingsForCustomer(@SpanAttribute("customerId") Long customerId) {
         logger.debug("Analyzing buildings for customer {}", customerId);
         
+        if (buildingStrategy == BuildingLoadStrategy.GROUPED) {
+            return analyzeBuildingsGrouped(customerId);
+        }
+        if (buildingStrategy == BuildingLoadStrategy.SUMMARY) {
+            return analyzeBuildingsFromSummary(customerId);
+        }
+        
         List<Building> buildings = buildingRepository.findByCustomerId(customerId);
         List<BuildingContext> contexts = new ArrayList<>();
         
@@ -52,9 +70,102 @@ public class BuildingAnalysisService {
         return contexts;
     }
     
+    /**
+     * Loads all buildings of a customer together with their device counts in one
+     * grouped query, so the query count does not depend on the number of buildings
+     */
+    @WithSpan("BuildingAnalysisService.analyzeBuildingsGrouped")
+    public List<BuildingContext> analyzeBuildingsGrouped(@SpanAttribute("customerId") Long customerId) {
+        List<BuildingContext> contexts = buildingRepository.findContextsWithDeviceCountsByCustomerId(customerId);
+        
+        logger.debug("Analyzed {} buildings for customer {} (grouped)", contexts.size(), customerId);
+        return contexts;
+    }
+    
+    /**
+     * Reads building device counts from the summary table maintained by triggers on devices,
+     * so the cost is one index scan over the customer's buildings
+     */
+    @WithSpan("BuildingAnalysisService.analyzeBuildingsFromSummary")
+    public List<BuildingContext> analyzeBuildingsFromSummary(@SpanAttribute("customerId") Long customerId) {
+        List<BuildingContext> contexts = new ArrayList<>();
+        for (Object[] row : buildingRepository.findSummariesByCustomerId(customerId)) {
+            contexts.add(BuildingContext.builder()
+                    .id(((Number) row[0]).longValue())
+                    .buildingType((String) row[1])
+                    .squareMeters((Integer) row[2])
+                    .deviceCount(((Number) row[3]).intValue())
+                    .build());
+        }
+        
+        logger.debug("Analyzed {} buildings for customer {} (summary)", contexts.size(), customerId);
+        return contexts;
+    }
+    
+    /**
+     * Per-type device statistics of a customer from the summary table,
+     * as rows of [deviceType, deviceCount, poweredDeviceCount, totalPowerConsumption]
+     */
+    @WithSpan("BuildingAnalysisService.getDeviceTypeSummariesForCustomer")
+    public List<Object[]> getDeviceTypeSummariesForCustomer(@SpanAttribute("customerId") Long customerId) {
+        return deviceRepository.findTypeSummariesByCustomerId(customerId);
+    }
+    
+    /**
+     * Per-type and per-status device aggregates computed by a GROUP BY in the database
+     */
+    @WithSpan("BuildingAnalysisService.aggregateDevicesByTypeAndStatus")
+    public List<Object[]> aggregateDevicesByTypeAndStatus(@SpanAttribute("customerId") Long customerId) {
+        logger.debug("Aggregating devices by type and status for customer {}", customerId);
+        return deviceRepository.aggregateByTypeAndStatus(customerId);
+    }
+    
+    /**
+     * Set-based variant of {@link #analyzeBuildingsGrouped} for many customers at once
+     */
+    @WithSpan("BuildingAnalysisService.analyzeBuildingsForCustomers")
+    public Map<Long, List<BuildingContext>> analyzeBuildingsForCustomers(Collection<Long> customerIds) {
+        Map<Long, List<BuildingContext>> contextsByCustomer = new HashMap<>();
+        for (Object[] row : buildingRepository.findDeviceCountsByCustomerIds(customerIds)) {
+            BuildingContext context = BuildingContext.builder()
+                    .id((Long) row[1])
+                    .buildingType((String) row[2])
+                    .squareMeters((Integer) row[3])
+                    .deviceCount(((Long) row[4]).intValue())
+                    .build();
+            contextsByCustomer.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add(context);
+        }
+        
+        logger.debug("Analyzed buildings for {} customers (batch)", contextsByCustomer.size());
+        return contextsByCustomer;
+    }
+    
     @WithSpan("BuildingAnalysisService.getAllDevicesForCustomer")
     public List<Device> getAllDevicesForCustomer(@SpanAttribute("customerId") Long customerId) {
         logger.debug("Fetching all devices for customer {}", customerId);
         return deviceRepository.findByCustomerId(customerId);
     }
+    
+    @WithSpan("BuildingAnalysisService.getDeviceContextsForCustomer")
+    public List<DeviceContext> getDeviceContextsForCustomer(@SpanAttribute("customerId") Long customerId) {
+        logger.debug("Fetching device projections for customer {}", customerId);
+        return deviceRepository.findContextsByCustomerId(customerId);
+    }
+    
+    @WithSpan("BuildingAnalysisService.getAllDevicesForCustomers")
+    public Map<Long, List<Device>> getAllDevicesForCustomers(Collection<Long> customerIds) {
+        logger.debug("Fetching all devices for {} customers", customerIds.size());
+        
+        Map<Long, List<Device>> devicesByCustomer = new HashMap<>();
+        for (Object[] row : deviceRepository.findByCustomerIds(customerIds)) {
+            devicesByCustomer.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add((Device) row[1]);
+        }
+        return devicesByCustomer;
+    }
+    
+    @WithSpan("BuildingAnalysisService.streamDevicesForCustomer")
+    public void streamDevicesForCustomer(@SpanAttribute("customerId") Long customerId, RowCallbackHandler rowHandler) {
+        logger.debug("Streaming devices for customer {}", customerId);
+        deviceCursorRepository.streamByCustomerId(customerId, rowHandler);
+    }
 }
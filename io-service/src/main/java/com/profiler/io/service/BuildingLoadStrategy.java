@@ -0,0 +1,22 @@
+package com.profiler.io.service;
+
+/**
+ * How building contexts and their device counts are loaded
+ */
+public enum BuildingLoadStrategy {
+    
+    /**
+     * One device query per building (N+1, kept for profiling demos)
+     */
+    PER_BUILDING,
+    
+    /**
+     * Single grouped query returning buildings with their device counts
+     */
+    GROUPED,
+    
+    /**
+     * Device counts read from the building_device_summary table (no device rows read)
+     */
+    SUMMARY
+}
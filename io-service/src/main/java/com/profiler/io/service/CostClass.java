@@ -0,0 +1,17 @@
+package com.profiler.io.service;
+
+/**
+ * Cost class of a recommendation request, estimated from the customer's device count
+ */
+public enum CostClass {
+    
+    /**
+     * Few devices; cheap to enrich and score
+     */
+    REGULAR,
+    
+    /**
+     * At least the configured device threshold; orders of magnitude more DB and CPU work
+     */
+    LARGE
+}
@@ -0,0 +1,130 @@
+package com.profiler.io.service;
+
+import com.profiler.io.repository.CustomerRepository;
+import com.profiler.io.util.Deadline;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs recommendation work within a concurrency share per {@link CostClass}, so cheap
+ * REGULAR requests never queue behind expensive LARGE ones. The class is estimated
+ * from the customer's device count: the caller's, taken from a cached snapshot, when it
+ * has one, else read from customer_device_summary (one primary key lookup, kept current
+ * by triggers). Within a class, waiters are served first come first served.
+ * The shares are static partitions, not fair queuing: a share that is idle is not lent
+ * to the other class, so one class can wait while the other's share is free.
+ */
+@Service
+public class CostClassScheduler {
+    
+    private static final Logger logger = LoggerFactory.getLogger(CostClassScheduler.class);
+    
+    private final CustomerRepository customerRepository;
+    private final boolean enabled;
+    private final int largeDeviceThreshold;
+    private final long maxWaitMs;
+    
+    private final Map<CostClass, Semaphore> shares = new EnumMap<>(CostClass.class);
+    private final Map<CostClass, Timer> waitTimes = new EnumMap<>(CostClass.class);
+    private final Map<CostClass, Counter> rejections = new EnumMap<>(CostClass.class);
+    
+    public CostClassScheduler(CustomerRepository customerRepository,
+                              MeterRegistry meterRegistry,
+                              @Value("${recommendations.scheduling.enabled:false}") boolean enabled,
+                              @Value("${recommendations.scheduling.large-device-threshold:1000}") int largeDeviceThreshold,
+                              @Value("${recommendations.scheduling.regular-concurrency:14}") int regularConcurrency,
+                              @Value("${recommendations.scheduling.large-concurrency:4}") int largeConcurrency,
+                              @Value("${recommendations.scheduling.max-wait-ms:5000}") long maxWaitMs) {
+        this.customerRepository = customerRepository;
+        this.enabled = enabled;
+        this.largeDeviceThreshold = largeDeviceThreshold;
+        this.maxWaitMs = maxWaitMs;
+        
+        shares.put(CostClass.REGULAR, new Semaphore(regularConcurrency, true));
+        shares.put(CostClass.LARGE, new Semaphore(largeConcurrency, true));
+        
+        for (CostClass costClass : CostClass.values()) {
+            String tag = costClass.name().toLowerCase();
+            Semaphore share = shares.get(costClass);
+            int concurrency = share.availablePermits();
+            
+            waitTimes.put(costClass, Timer.builder("recommendations.scheduler.wait")
+                    .tag("class", tag)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+            rejections.put(costClass, Counter.builder("recommendations.scheduler.rejected")
+                    .tag("class", tag)
+                    .register(meterRegistry));
+            Gauge.builder("recommendations.scheduler.queue", share, Semaphore::getQueueLength)
+                    .tag("class", tag)
+                    .register(meterRegistry);
+            Gauge.builder("recommendations.scheduler.in-flight", share, s -> concurrency - s.availablePermits())
+                    .tag("class", tag)
+                    .register(meterRegistry);
+        }
+    }
+    
+    public <T> T execute(Long customerId, Supplier<T> work) {
+        return execute(customerId, null, work);
+    }
+    
+    /**
+     * A known device count saves the lookup; null reads it
+     */
+    public <T> T execute(Long customerId, Integer knownDeviceCount, Supplier<T> work) {
+        if (!enabled) {
+            return work.get();
+        }
+        
+        CostClass costClass = classify(customerId, knownDeviceCount);
+        Semaphore share = shares.get(costClass);
+        Deadline deadline = Deadline.current();
+        long waitMs = deadline != null ? Math.min(maxWaitMs, deadline.remainingMillis()) : maxWaitMs;
+        long waitStart = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = share.tryAcquire(waitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WorkRejectedException("Interrupted while waiting for a " + costClass + " share");
+        }
+        waitTimes.get(costClass).record(System.nanoTime() - waitStart, TimeUnit.NANOSECONDS);
+        
+        if (!acquired) {
+            rejections.get(costClass).increment();
+            throw new WorkRejectedException("No " + costClass + " share free within " + waitMs + " ms");
+        }
+        try {
+            return work.get();
+        } finally {
+            share.release();
+        }
+    }
+    
+    /**
+     * Customers without a summary row (unknown or without devices) are REGULAR
+     */
+    public CostClass classify(Long customerId) {
+        return classify(customerId, null);
+    }
+    
+    public CostClass classify(Long customerId, Integer knownDeviceCount) {
+        int deviceCount = knownDeviceCount != null
+                ? knownDeviceCount
+                : customerRepository.findDeviceCount(customerId).orElse(0);
+        logger.debug("Estimated {} devices for customer {}", deviceCount, customerId);
+        return deviceCount >= largeDeviceThreshold ? CostClass.LARGE : CostClass.REGULAR;
+    }
+}
@@ -1,19 +1,46 @@
 package com.profiler.io.service;
 
+import com.profiler.io.cache.CustomerSnapshotCache;
+import com.profiler.io.cache.SnapshotFileStore;
 import com.profiler.io.model.*;
 import com.profiler.io.repository.CustomerRepository;
+import com.profiler.io.util.BatchLoader;
 import com.profiler.io.util.DataMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.context.Context;
 import io.opentelemetry.instrumentation.annotations.WithSpan;
 import io.opentelemetry.instrumentation.annotations.SpanAttribute;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * Level 3: Customer Enrichment Service
- * Enriches customer data with related entities
+ * Enriches customer data with related entities.
+ * In concurrent mode the customer, device and building branches run on separate
+ * virtual threads, each in its own read-only transaction.
+ * In micro-batch mode concurrent single-customer loads are collapsed into set-based
+ * IN (...) queries by {@link BatchLoader}s for customers, devices and buildings.
+ * Batch and micro-batch loads always read device entities; the device strategy only
+ * applies to single-customer loads, and AGGREGATE cannot be combined with micro-batching.
  */
 @Service
 public class CustomerEnrichmentService {
@@ -24,47 +51,297 @@ public class CustomerEnrichmentService {
     private final DeviceAggregationService deviceAggregationService;
     private final BuildingAnalysisService buildingAnalysisService;
     private final DataMapper dataMapper;
+    private final CustomerSnapshotCache snapshotCache;
+    private final SnapshotFileStore snapshotStore;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean concurrent;
+    private final boolean customerProjection;
+    private final int batchQueryChunkSize;
+    private final boolean microBatch;
+    private final BatchLoader<Long, CustomerContext> customerLoader;
+    private final BatchLoader<Long, List<DeviceContext>> deviceLoader;
+    private final BatchLoader<Long, List<BuildingContext>> buildingLoader;
     
     public CustomerEnrichmentService(CustomerRepository customerRepository,
                                      DeviceAggregationService deviceAggregationService,
                                      BuildingAnalysisService buildingAnalysisService,
-                                     DataMapper dataMapper) {
+                                     DataMapper dataMapper,
+                                     CustomerSnapshotCache snapshotCache,
+                                     SnapshotFileStore snapshotStore,
+                                     PlatformTransactionManager transactionManager,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${enrichment.concurrent:false}") boolean concurrent,
+                                     @Value("${enrichment.customer-projection:false}") boolean customerProjection,
+                                     @Value("${recommendations.batch.query-chunk-size:500}") int batchQueryChunkSize,
+                                     @Value("${enrichment.micro-batch.enabled:false}") boolean microBatch,
+                                     @Value("${enrichment.micro-batch.max-batch-size:100}") int microBatchMaxSize,
+                                     @Value("${enrichment.micro-batch.window-micros:2000}") long microBatchWindowMicros) {
         this.customerRepository = customerRepository;
         this.deviceAggregationService = deviceAggregationService;
         this.buildingAnalysisService = buildingAnalysisService;
         this.dataMapper = dataMapper;
+        this.snapshotCache = snapshotCache;
+        this.snapshotStore = snapshotStore;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.concurrent = concurrent;
+        this.customerProjection = customerProjection;
+        this.batchQueryChunkSize = batchQueryChunkSize;
+        this.microBatch = microBatch;
+        
+        DeviceLoadStrategy deviceStrategy = deviceAggregationService.getDeviceStrategy();
+        if (microBatch && deviceStrategy == DeviceLoadStrategy.AGGREGATE) {
+            throw new IllegalStateException("enrichment.micro-batch.enabled cannot be combined with "
+                    + "enrichment.device-strategy=AGGREGATE: micro-batched loads send device lists, not summaries");
+        }
+        if (deviceStrategy != DeviceLoadStrategy.ENTITY) {
+            logger.warn("enrichment.device-strategy={} is ignored by batch requests{}, which load device entities",
+                        deviceStrategy, microBatch ? " and micro-batched loads" : "");
+        }
+        
+        if (microBatch) {
+            this.customerLoader = new BatchLoader<>(meterRegistry, "enrichment.loader.customers",
+                    microBatchMaxSize, microBatchWindowMicros,
+                    ids -> inReadOnlyTransaction(() -> customerRepository.findAllById(ids).stream()
+                            .collect(Collectors.toMap(Customer::getId, dataMapper::toCustomerContext))));
+            this.deviceLoader = new BatchLoader<>(meterRegistry, "enrichment.loader.devices",
+                    microBatchMaxSize, microBatchWindowMicros,
+                    ids -> inReadOnlyTransaction(() -> deviceAggregationService.aggregateDevicesForCustomers(ids)));
+            this.buildingLoader = new BatchLoader<>(meterRegistry, "enrichment.loader.buildings",
+                    microBatchMaxSize, microBatchWindowMicros,
+                    ids -> inReadOnlyTransaction(() -> buildingAnalysisService.analyzeBuildingsForCustomers(ids)));
+        } else {
+            this.customerLoader = null;
+            this.deviceLoader = null;
+            this.buildingLoader = null;
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (microBatch) {
+            customerLoader.close();
+            deviceLoader.close();
+            buildingLoader.close();
+        }
     }
     
     @WithSpan("enrichCustomerData")
     public RecommendationRequest enrichCustomerData(@SpanAttribute("customerId") Long customerId) {
         logger.debug("Enriching data for customer {}", customerId);
         
-        Customer customer = customerRepository.findById(customerId)
-                .orElseThrow(() -> new RuntimeException("Customer not found: " + customerId));
+        if (snapshotCache.isEnabled()) {
+            return snapshotCache.get(customerId, this::loadThroughStore);
+        }
+        return loadThroughStore(customerId);
+    }
+    
+    /**
+     * Device count of the customer's snapshot in the in-memory cache, or null when none is cached
+     */
+    public Integer cachedDeviceCount(Long customerId) {
+        if (!snapshotCache.isEnabled()) {
+            return null;
+        }
+        RecommendationRequest cached = snapshotCache.lookup(customerId);
+        return cached != null && cached.getCustomer() != null ? cached.getCustomer().getTotalDevices() : null;
+    }
+    
+    /**
+     * The on-disk snapshot store sits between the in-memory cache and the database
+     */
+    private RecommendationRequest loadThroughStore(Long customerId) {
+        if (snapshotStore.isEnabled()) {
+            return snapshotStore.get(customerId, this::loadCustomerData);
+        }
+        return loadCustomerData(customerId);
+    }
+    
+    /**
+     * Enriches many customers with set-based queries (customer_id IN (...)),
+     * chunked so that each IN list stays bounded. Unknown customers are skipped.
+     * Each request's loadedAt is the start of its chunk.
+     */
+    @WithSpan("enrichCustomersData")
+    public List<RecommendationRequest> enrichCustomersData(List<Long> customerIds) {
+        List<Long> distinctIds = customerIds.stream().distinct().toList();
+        logger.debug("Enriching data for {} customers", distinctIds.size());
+        
+        List<RecommendationRequest> requests = new ArrayList<>(distinctIds.size());
+        for (int from = 0; from < distinctIds.size(); from += batchQueryChunkSize) {
+            List<Long> chunk = distinctIds.subList(from, Math.min(from + batchQueryChunkSize, distinctIds.size()));
+            Instant loadedAt = Instant.now();
+            List<RecommendationRequest> loaded = inReadOnlyTransaction(() -> loadCustomersData(chunk));
+            loaded.forEach(request -> request.setLoadedAt(loadedAt));
+            requests.addAll(loaded);
+        }
+        return requests;
+    }
+    
+    private List<RecommendationRequest> loadCustomersData(List<Long> customerIds) {
+        Map<Long, CustomerContext> customers = customerRepository.findAllById(customerIds).stream()
+                .collect(Collectors.toMap(Customer::getId, dataMapper::toCustomerContext));
+        Map<Long, List<DeviceContext>> devices = deviceAggregationService.aggregateDevicesForCustomers(customerIds);
+        Map<Long, List<BuildingContext>> buildings = buildingAnalysisService.analyzeBuildingsForCustomers(customerIds);
+        
+        List<RecommendationRequest> requests = new ArrayList<>(customers.size());
+        for (Long customerId : customerIds) {
+            CustomerContext customer = customers.get(customerId);
+            if (customer == null) {
+                logger.warn("Customer not found: {}", customerId);
+                continue;
+            }
+            requests.add(buildRequest(customerId,
+                    customer,
+                    new DeviceData(devices.getOrDefault(customerId, List.of()), null),
+                    buildings.getOrDefault(customerId, List.of())));
+        }
+        return requests;
+    }
+    
+    private RecommendationRequest loadCustomerData(Long customerId) {
+        Instant loadedAt = Instant.now();
+        RecommendationRequest request;
+        if (microBatch) {
+            request = loadMicroBatched(customerId);
+        } else if (concurrent) {
+            request = loadConcurrently(customerId);
+        } else {
+            request = inReadOnlyTransaction(() -> loadSequentially(customerId));
+        }
+        request.setLoadedAt(loadedAt);
+        return request;
+    }
+    
+    private RecommendationRequest loadSequentially(Long customerId) {
+        CustomerContext customer = findCustomer(customerId);
         
         // Get aggregated devices (calls level 4)
-        List<DeviceContext> deviceContexts = deviceAggregationService.aggregateDevices(customerId);
+        DeviceData devices = loadDevices(customerId);
         
         // Get building analysis (calls level 5)
         List<BuildingContext> buildingContexts = buildingAnalysisService.analyzeBuildingsForCustomer(customerId);
         
-        // Create customer context
-        CustomerContext customerContext = dataMapper.toCustomerContext(
-                customer,
-                buildingContexts.size(),
-                deviceContexts.size()
-        );
+        return buildRequest(customerId, customer, devices, buildingContexts);
+    }
+    
+    /**
+     * Enqueues the three loads and waits for the batches they land in. No transaction is
+     * held while waiting; each batch runs in its own read-only transaction.
+     */
+    private RecommendationRequest loadMicroBatched(Long customerId) {
+        CompletableFuture<CustomerContext> customer = customerLoader.loadAsync(customerId);
+        CompletableFuture<List<DeviceContext>> devices = deviceLoader.loadAsync(customerId);
+        CompletableFuture<List<BuildingContext>> buildings = buildingLoader.loadAsync(customerId);
+        
+        CustomerContext customerContext = BatchLoader.await(customer);
+        if (customerContext == null) {
+            throw new RuntimeException("Customer not found: " + customerId);
+        }
+        List<DeviceContext> deviceContexts = BatchLoader.await(devices);
+        List<BuildingContext> buildingContexts = BatchLoader.await(buildings);
+        
+        return buildRequest(customerId,
+                customerContext,
+                new DeviceData(deviceContexts != null ? deviceContexts : List.of(), null),
+                buildingContexts != null ? buildingContexts : List.of());
+    }
+    
+    private DeviceData loadDevices(Long customerId) {
+        if (deviceAggregationService.summarizesDevices()) {
+            return new DeviceData(null, deviceAggregationService.summarizeDevices(customerId));
+        }
+        return new DeviceData(deviceAggregationService.aggregateDevices(customerId), null);
+    }
+    
+    /**
+     * Fans the three independent branches out to virtual threads and joins them.
+     * The first failing branch cancels the others; no branch outlives this call.
+     */
+    @SuppressWarnings("unchecked")
+    private RecommendationRequest loadConcurrently(Long customerId) {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            CompletionService<Object> branches = new ExecutorCompletionService<>(executor);
+            
+            Future<Object> customer = branches.submit(Context.current().wrap(
+                    () -> inReadOnlyTransaction(() -> findCustomer(customerId))));
+            Future<Object> devices = branches.submit(Context.current().wrap(
+                    () -> inReadOnlyTransaction(() -> loadDevices(customerId))));
+            Future<Object> buildings = branches.submit(Context.current().wrap(
+                    () -> inReadOnlyTransaction(() -> buildingAnalysisService.analyzeBuildingsForCustomer(customerId))));
+            
+            awaitAll(branches, 3, executor);
+            
+            return buildRequest(customerId,
+                    (CustomerContext) customer.resultNow(),
+                    (DeviceData) devices.resultNow(),
+                    (List<BuildingContext>) buildings.resultNow());
+        }
+    }
+    
+    private void awaitAll(CompletionService<Object> branches, int count, ExecutorService executor) {
+        try {
+            for (int i = 0; i < count; i++) {
+                branches.take().get();
+            }
+        } catch (ExecutionException e) {
+            executor.shutdownNow();
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while enriching customer data", e);
+        }
+    }
+    
+    private <T> T inReadOnlyTransaction(Supplier<T> work) {
+        return readOnlyTransaction.execute(status -> work.get());
+    }
+    
+    private CustomerContext findCustomer(Long customerId) {
+        if (customerProjection) {
+            return customerRepository.findContextById(customerId)
+                    .orElseThrow(() -> new RuntimeException("Customer not found: " + customerId));
+        }
+        Customer customer = customerRepository.findById(customerId)
+                .orElseThrow(() -> new RuntimeException("Customer not found: " + customerId));
+        return dataMapper.toCustomerContext(customer);
+    }
+    
+    private RecommendationRequest buildRequest(Long customerId,
+                                               CustomerContext customerContext,
+                                               DeviceData devices,
+                                               List<BuildingContext> buildingContexts) {
+        customerContext.setTotalBuildings(buildingContexts.size());
+        customerContext.setTotalDevices(devices.deviceCount());
         
         RecommendationRequest request = RecommendationRequest.builder()
                 .customerId(customerId)
                 .customer(customerContext)
                 .buildings(buildingContexts)
-                .devices(deviceContexts)
+                .devices(devices.contexts())
+                .deviceSummaries(devices.summaries())
                 .build();
         
         logger.debug("Enriched customer data: {} buildings, {} devices",
-                     buildingContexts.size(), deviceContexts.size());
+                     buildingContexts.size(), devices.deviceCount());
         
         return request;
     }
+    
+    /**
+     * Either the device list or, in AGGREGATE mode, the per-type summaries
+     */
+    private record DeviceData(List<DeviceContext> contexts, List<DeviceTypeSummary> summaries) {
+        
+        int deviceCount() {
+            if (contexts != null) {
+                return contexts.size();
+            }
+            return summaries.stream().mapToInt(DeviceTypeSummary::getDeviceCount).sum();
+        }
+    }
 }
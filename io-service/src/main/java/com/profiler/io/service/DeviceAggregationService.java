@@ -2,14 +2,23 @@ package com.profiler.io.service;
 
 import com.profiler.io.model.Device;
 import com.profiler.io.model.DeviceContext;
+import com.profiler.io.model.DeviceSnapshot;
+import com.profiler.io.model.DeviceTypeSummary;
 import com.profiler.io.util.DataMapper;
 import com.profiler.io.util.StatisticsCalculator;
 import io.opentelemetry.instrumentation.annotations.WithSpan;
 import io.opentelemetry.instrumentation.annotations.SpanAttribute;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -26,41 +35,228 @@ public class DeviceAggregationService {
     private final BuildingAnalysisService buildingAnalysisService;
     private final DataMapper dataMapper;
     private final StatisticsCalculator statisticsCalculator;
+    private final DeviceLoadStrategy deviceStrategy;
+    private final StatisticsSource statisticsSource;
     
     public DeviceAggregationService(BuildingAnalysisService buildingAnalysisService,
                                     DataMapper dataMapper,
-                                    StatisticsCalculator statisticsCalculator) {
+                                    StatisticsCalculator statisticsCalculator,
+                                    @Value("${enrichment.device-strategy:ENTITY}") DeviceLoadStrategy deviceStrategy,
+                                    @Value("${enrichment.statistics-source:DEVICES}") StatisticsSource statisticsSource) {
         this.buildingAnalysisService = buildingAnalysisService;
         this.dataMapper = dataMapper;
         this.statisticsCalculator = statisticsCalculator;
+        this.deviceStrategy = deviceStrategy;
+        this.statisticsSource = statisticsSource;
     }
     
     @WithSpan("aggregateDevices")
     public List<DeviceContext> aggregateDevices(@SpanAttribute("customerId") Long customerId) {
         logger.debug("Aggregating devices for customer {}", customerId);
         
+        if (deviceStrategy == DeviceLoadStrategy.CURSOR) {
+            return aggregateDevicesStreaming(customerId);
+        }
+        if (deviceStrategy == DeviceLoadStrategy.COLUMNAR) {
+            return aggregateDevicesColumnar(customerId);
+        }
+        if (deviceStrategy == DeviceLoadStrategy.PROJECTION) {
+            return aggregateDevicesProjected(customerId);
+        }
+        
         List<Device> devices = buildingAnalysisService.getAllDevicesForCustomer(customerId);
         
-        // Calculate statistics (adds depth to call stack)
-        List<String> deviceTypes = devices.stream()
-                .map(Device::getDeviceType)
-                .collect(Collectors.toList());
+        if (statisticsSource == StatisticsSource.SUMMARY) {
+            calculateStatisticsFromSummary(customerId);
+        } else {
+            // Calculate statistics (adds depth to call stack)
+            List<String> deviceTypes = devices.stream()
+                    .map(Device::getDeviceType)
+                    .collect(Collectors.toList());
+            
+            Map<String, Long> typeCounts = statisticsCalculator.calculateDeviceTypeCounts(deviceTypes);
+            logger.debug("Device type distribution: {}", typeCounts);
+            
+            List<Integer> powerConsumptions = devices.stream()
+                    .map(Device::getPowerConsumption)
+                    .filter(p -> p != null)
+                    .collect(Collectors.toList());
+            
+            Double avgPower = statisticsCalculator.calculateAveragePowerConsumption(powerConsumptions);
+            logger.debug("Average power consumption: {} watts", avgPower);
+        }
         
-        Map<String, Long> typeCounts = statisticsCalculator.calculateDeviceTypeCounts(deviceTypes);
+        // Convert to contexts
+        List<DeviceContext> contexts = dataMapper.toDeviceContextList(devices);
+        logger.debug("Aggregated {} device contexts", contexts.size());
+        
+        return contexts;
+    }
+    
+    /**
+     * Statistics over DTO projections; the projected contexts are returned as they are,
+     * so nothing is copied and the persistence context stays empty
+     */
+    @WithSpan("aggregateDevicesProjected")
+    public List<DeviceContext> aggregateDevicesProjected(@SpanAttribute("customerId") Long customerId) {
+        List<DeviceContext> contexts = buildingAnalysisService.getDeviceContextsForCustomer(customerId);
+        
+        Map<String, Long> typeCounts = new HashMap<>();
+        long totalPowerConsumption = 0;
+        long poweredDeviceCount = 0;
+        for (DeviceContext context : contexts) {
+            typeCounts.merge(context.getDeviceType(), 1L, Long::sum);
+            if (context.getPowerConsumption() != null) {
+                totalPowerConsumption += context.getPowerConsumption();
+                poweredDeviceCount++;
+            }
+        }
         logger.debug("Device type distribution: {}", typeCounts);
         
-        List<Integer> powerConsumptions = devices.stream()
-                .map(Device::getPowerConsumption)
-                .filter(p -> p != null)
-                .collect(Collectors.toList());
+        Double avgPower = statisticsCalculator.calculateAveragePowerConsumption(totalPowerConsumption, poweredDeviceCount);
+        logger.debug("Average power consumption: {} watts", avgPower);
+        
+        logger.debug("Aggregated {} device contexts (projection)", contexts.size());
+        return contexts;
+    }
+    
+    public DeviceLoadStrategy getDeviceStrategy() {
+        return deviceStrategy;
+    }
+    
+    /**
+     * Whether requests carry per-type summaries instead of device lists
+     */
+    public boolean summarizesDevices() {
+        return deviceStrategy == DeviceLoadStrategy.AGGREGATE;
+    }
+    
+    /**
+     * Device statistics computed by the database: only one row per type and status
+     * is transferred, and no device entities or contexts are created
+     */
+    @WithSpan("summarizeDevices")
+    public List<DeviceTypeSummary> summarizeDevices(@SpanAttribute("customerId") Long customerId) {
+        List<DeviceTypeSummary> summaries = dataMapper.toDeviceTypeSummaries(
+                buildingAnalysisService.aggregateDevicesByTypeAndStatus(customerId));
+        
+        Map<String, Long> typeCounts = new HashMap<>();
+        long totalPowerConsumption = 0;
+        long poweredDeviceCount = 0;
+        for (DeviceTypeSummary summary : summaries) {
+            typeCounts.put(summary.getDeviceType(), summary.getDeviceCount().longValue());
+            totalPowerConsumption += summary.getTotalPowerConsumption();
+            poweredDeviceCount += summary.getPoweredDeviceCount();
+        }
+        logger.debug("Device type distribution: {}", typeCounts);
         
-        Double avgPower = statisticsCalculator.calculateAveragePowerConsumption(powerConsumptions);
+        Double avgPower = statisticsCalculator.calculateAveragePowerConsumption(totalPowerConsumption, poweredDeviceCount);
         logger.debug("Average power consumption: {} watts", avgPower);
         
-        // Convert to contexts
-        List<DeviceContext> contexts = dataMapper.toDeviceContextList(devices);
-        logger.debug("Aggregated {} device contexts", contexts.size());
+        logger.debug("Summarized devices into {} device types", summaries.size());
+        return summaries;
+    }
+    
+    /**
+     * Set-based variant for many customers: one device query, grouped by customer.
+     * Always loads entities, whatever the configured device strategy.
+     */
+    @WithSpan("aggregateDevicesForCustomers")
+    public Map<Long, List<DeviceContext>> aggregateDevicesForCustomers(Collection<Long> customerIds) {
+        Map<Long, List<Device>> devicesByCustomer = buildingAnalysisService.getAllDevicesForCustomers(customerIds);
         
-        return contexts;
+        Map<Long, List<DeviceContext>> contextsByCustomer = new HashMap<>();
+        devicesByCustomer.forEach((customerId, devices) ->
+                contextsByCustomer.put(customerId, dataMapper.toDeviceContextList(devices)));
+        
+        logger.debug("Aggregated devices for {} customers (batch)", contextsByCustomer.size());
+        return contextsByCustomer;
+    }
+    
+    /**
+     * Single pass over a device cursor: statistics and contexts are built row by row,
+     * without managed entities or intermediate lists
+     */
+    @WithSpan("aggregateDevicesStreaming")
+    public List<DeviceContext> aggregateDevicesStreaming(@SpanAttribute("customerId") Long customerId) {
+        StreamingAggregator aggregator = new StreamingAggregator();
+        buildingAnalysisService.streamDevicesForCustomer(customerId, aggregator);
+        
+        logger.debug("Device type distribution: {}", aggregator.typeCounts);
+        
+        Double avgPower = statisticsCalculator.calculateAveragePowerConsumption(
+                aggregator.totalPowerConsumption,
+                aggregator.poweredDeviceCount
+        );
+        logger.debug("Average power consumption: {} watts", avgPower);
+        
+        logger.debug("Aggregated {} device contexts (streaming)", aggregator.contexts.size());
+        return aggregator.contexts;
+    }
+    
+    /**
+     * Loads devices into a columnar snapshot and computes statistics on the columns.
+     * The snapshot is returned as a list view, so no DeviceContext is materialized
+     * unless a consumer reads an element (JSON serialization does, one at a time).
+     */
+    @WithSpan("aggregateDevicesColumnar")
+    public List<DeviceContext> aggregateDevicesColumnar(@SpanAttribute("customerId") Long customerId) {
+        DeviceSnapshot snapshot = loadDeviceSnapshot(customerId);
+        
+        Map<String, Long> typeCounts = statisticsCalculator.calculateDeviceTypeCounts(snapshot);
+        logger.debug("Device type distribution: {}", typeCounts);
+        
+        Double avgPower = statisticsCalculator.calculateAveragePowerConsumption(snapshot);
+        logger.debug("Average power consumption: {} watts", avgPower);
+        
+        logger.debug("Aggregated {} devices (columnar, ~{} bytes)", snapshot.size(), snapshot.estimatedSizeBytes());
+        return snapshot.asDeviceContexts();
+    }
+    
+    /**
+     * Type counts and average power from the per-type summary rows instead of the device list
+     */
+    @WithSpan("calculateStatisticsFromSummary")
+    public void calculateStatisticsFromSummary(@SpanAttribute("customerId") Long customerId) {
+        Map<String, Long> typeCounts = new HashMap<>();
+        long totalPowerConsumption = 0;
+        long poweredDeviceCount = 0;
+        for (Object[] row : buildingAnalysisService.getDeviceTypeSummariesForCustomer(customerId)) {
+            typeCounts.put((String) row[0], ((Number) row[1]).longValue());
+            poweredDeviceCount += ((Number) row[2]).longValue();
+            totalPowerConsumption += ((Number) row[3]).longValue();
+        }
+        logger.debug("Device type distribution: {}", typeCounts);
+        
+        Double avgPower = statisticsCalculator.calculateAveragePowerConsumption(totalPowerConsumption, poweredDeviceCount);
+        logger.debug("Average power consumption: {} watts", avgPower);
+    }
+    
+    @WithSpan("loadDeviceSnapshot")
+    public DeviceSnapshot loadDeviceSnapshot(@SpanAttribute("customerId") Long customerId) {
+        DeviceSnapshot.Builder builder = DeviceSnapshot.builder();
+        buildingAnalysisService.streamDevicesForCustomer(customerId, row -> dataMapper.appendDevice(builder, row));
+        return builder.build();
+    }
+    
+    private class StreamingAggregator implements RowCallbackHandler {
+        
+        private final List<DeviceContext> contexts = new ArrayList<>();
+        private final Map<String, Long> typeCounts = new HashMap<>();
+        private long totalPowerConsumption = 0;
+        private long poweredDeviceCount = 0;
+        
+        @Override
+        public void processRow(ResultSet row) throws SQLException {
+            DeviceContext context = dataMapper.toDeviceContext(row);
+            
+            typeCounts.merge(context.getDeviceType(), 1L, Long::sum);
+            if (context.getPowerConsumption() != null) {
+                totalPowerConsumption += context.getPowerConsumption();
+                poweredDeviceCount++;
+            }
+            
+            contexts.add(context);
+        }
     }
 }
@@ -0,0 +1,33 @@
+package com.profiler.io.service;
+
+/**
+ * How device rows are loaded and aggregated
+ */
+public enum DeviceLoadStrategy {
+    
+    /**
+     * Managed Device entities, copied into intermediate lists
+     */
+    ENTITY,
+    
+    /**
+     * Forward-only JDBC cursor, aggregated in a single pass
+     */
+    CURSOR,
+    
+    /**
+     * JDBC cursor into a columnar DeviceSnapshot; statistics run on the columns
+     */
+    COLUMNAR,
+    
+    /**
+     * DeviceContext DTOs built by a JPQL constructor expression, no managed entities
+     */
+    PROJECTION,
+    
+    /**
+     * GROUP BY in the database; only per-type summaries reach the JVM and the
+     * request carries deviceSummaries instead of a device list
+     */
+    AGGREGATE
+}
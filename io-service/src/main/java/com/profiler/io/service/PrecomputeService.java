@@ -0,0 +1,253 @@
+package com.profiler.io.service;
+
+import com.profiler.io.cache.RecommendationStore;
+import com.profiler.io.model.PrecomputeStatus;
+import com.profiler.io.model.RecommendationResponse;
+import com.profiler.io.repository.CustomerRepository;
+import io.opentelemetry.instrumentation.annotations.WithSpan;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Background precomputation of recommendations for all customers.
+ * Customers are walked in id order in batches; at most {@code parallelism} batches are
+ * in flight, which bounds both the database connections and the cpu-service calls in use.
+ * Unless forced, customers with a stored result younger than the max age and no device
+ * or building changes since (customer_device_summary.updated_at) are skipped.
+ */
+@Service
+public class PrecomputeService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PrecomputeService.class);
+    
+    private final CustomerRepository customerRepository;
+    private final RecommendationService recommendationService;
+    private final RecommendationStore recommendationStore;
+    private final boolean scheduleEnabled;
+    private final int parallelism;
+    private final int batchSize;
+    private final long maxAgeMs;
+    
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicLong runIds = new AtomicLong();
+    private volatile Run lastRun;
+    
+    public PrecomputeService(CustomerRepository customerRepository,
+                             RecommendationService recommendationService,
+                             RecommendationStore recommendationStore,
+                             @Value("${recommendations.precompute.enabled:false}") boolean scheduleEnabled,
+                             @Value("${recommendations.precompute.parallelism:4}") int parallelism,
+                             @Value("${recommendations.precompute.batch-size:200}") int batchSize,
+                             @Value("${recommendations.precompute.max-age-seconds:3600}") long maxAgeSeconds) {
+        this.customerRepository = customerRepository;
+        this.recommendationService = recommendationService;
+        this.recommendationStore = recommendationStore;
+        this.scheduleEnabled = scheduleEnabled;
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+        this.maxAgeMs = maxAgeSeconds * 1000L;
+    }
+    
+    @Scheduled(initialDelayString = "${recommendations.precompute.initial-delay-ms:60000}",
+               fixedDelayString = "${recommendations.precompute.interval-ms:3600000}")
+    public void scheduledRun() {
+        if (scheduleEnabled && start(false) == null) {
+            logger.info("Skipping scheduled precompute run, previous run still in progress");
+        }
+    }
+    
+    /**
+     * Starts a run in the background; returns null when a run is already in progress
+     */
+    public PrecomputeStatus start(boolean force) {
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+        
+        Run run;
+        try {
+            run = new Run(runIds.incrementAndGet(), force, customerRepository.count());
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+        lastRun = run;
+        
+        logger.info("Starting precompute run {} for {} customers (force: {})", run.id, run.totalCustomers, force);
+        Thread.ofPlatform().name("precompute-run-" + run.id).start(() -> execute(run));
+        return status();
+    }
+    
+    public PrecomputeStatus status() {
+        Run run = lastRun;
+        if (run == null) {
+            return PrecomputeStatus.builder()
+                    .running(false)
+                    .storedRecommendations(recommendationStore.size())
+                    .build();
+        }
+        return run.toStatus(recommendationStore.size());
+    }
+    
+    @WithSpan("PrecomputeService.execute")
+    void execute(Run run) {
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism);
+        Semaphore inFlightBatches = new Semaphore(parallelism);
+        try {
+            Long afterId = 0L;
+            List<Long> batch;
+            while (!(batch = customerRepository.findIdsAfter(afterId, PageRequest.of(0, batchSize))).isEmpty()) {
+                afterId = batch.get(batch.size() - 1);
+                
+                inFlightBatches.acquire();
+                List<Long> customerIds = batch;
+                workers.execute(() -> {
+                    try {
+                        processBatch(run, customerIds);
+                    } finally {
+                        inFlightBatches.release();
+                    }
+                });
+            }
+            inFlightBatches.acquire(parallelism);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            run.lastError = "Interrupted";
+        } catch (RuntimeException e) {
+            logger.error("Precompute run {} failed: {}", run.id, e.getMessage());
+            run.lastError = e.getMessage();
+        } finally {
+            workers.shutdownNow();
+            run.finishedAt = Instant.now();
+            running.set(false);
+            logger.info("Precompute run {} finished: {}", run.id, run.toStatus(recommendationStore.size()));
+        }
+    }
+    
+    private void processBatch(Run run, List<Long> customerIds) {
+        List<Long> staleIds = run.force ? customerIds : selectStale(customerIds);
+        run.skipped.add(customerIds.size() - staleIds.size());
+        
+        if (!staleIds.isEmpty()) {
+            try {
+                List<RecommendationResponse> responses = recommendationService.getBatchRecommendations(staleIds);
+                responses.forEach(recommendationStore::put);
+                run.computed.add(responses.size());
+                run.failed.add(staleIds.size() - responses.size());
+            } catch (RuntimeException e) {
+                logger.warn("Precompute batch starting at customer {} failed: {}", customerIds.get(0), e.getMessage());
+                run.failed.add(staleIds.size());
+                run.lastError = e.getMessage();
+            }
+        }
+        run.processed.add(customerIds.size());
+    }
+    
+    /**
+     * computedAt is the JVM's clock, taken before the data was read; updated_at is the database's.
+     * updated_at is shifted by the database's offset from the JVM, which also cancels a time zone
+     * mismatch of the TIMESTAMP column. The JVM time is taken after the query, so the query's own
+     * latency can only make a result look staler, never fresher.
+     */
+    private List<Long> selectStale(List<Long> customerIds) {
+        Map<Long, Instant> updateTimes = new HashMap<>();
+        List<Object[]> rows = customerRepository.findDeviceUpdateTimes(customerIds);
+        Instant now = Instant.now();
+        for (Object[] row : rows) {
+            Instant updatedAt = toInstant(row[1]);
+            Instant databaseNow = toInstant(row[2]);
+            if (updatedAt != null && databaseNow != null) {
+                updatedAt = updatedAt.minus(Duration.between(now, databaseNow));
+            }
+            updateTimes.put(((Number) row[0]).longValue(), updatedAt);
+        }
+        
+        Instant oldestFresh = Instant.now().minusMillis(maxAgeMs);
+        List<Long> staleIds = new ArrayList<>();
+        for (Long customerId : customerIds) {
+            RecommendationResponse stored = recommendationStore.get(customerId);
+            Instant dataUpdatedAt = updateTimes.get(customerId);
+            if (stored == null
+                    || stored.getComputedAt().isBefore(oldestFresh)
+                    || (dataUpdatedAt != null && dataUpdatedAt.isAfter(stored.getComputedAt()))) {
+                staleIds.add(customerId);
+            }
+        }
+        return staleIds;
+    }
+    
+    private static Instant toInstant(Object value) {
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toInstant();
+        }
+        if (value instanceof LocalDateTime localDateTime) {
+            return localDateTime.atZone(ZoneId.systemDefault()).toInstant();
+        }
+        if (value instanceof Instant instant) {
+            return instant;
+        }
+        return null;
+    }
+    
+    private static final class Run {
+        
+        private final long id;
+        private final boolean force;
+        private final long totalCustomers;
+        private final Instant startedAt = Instant.now();
+        private final LongAdder processed = new LongAdder();
+        private final LongAdder computed = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private volatile Instant finishedAt;
+        private volatile String lastError;
+        
+        private Run(long id, boolean force, long totalCustomers) {
+            this.id = id;
+            this.force = force;
+            this.totalCustomers = totalCustomers;
+        }
+        
+        private PrecomputeStatus toStatus(int storedRecommendations) {
+            Instant end = finishedAt != null ? finishedAt : Instant.now();
+            double elapsedSeconds = Math.max(1, end.toEpochMilli() - startedAt.toEpochMilli()) / 1000.0;
+            long processedCustomers = processed.sum();
+            
+            return PrecomputeStatus.builder()
+                    .runId(id)
+                    .running(finishedAt == null)
+                    .force(force)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .totalCustomers(totalCustomers)
+                    .processedCustomers(processedCustomers)
+                    .computedCustomers(computed.sum())
+                    .skippedCustomers(skipped.sum())
+                    .failedCustomers(failed.sum())
+                    .customersPerSecond(processedCustomers / elapsedSeconds)
+                    .storedRecommendations(storedRecommendations)
+                    .lastError(lastError)
+                    .build();
+        }
+    }
+}
@@ -1,14 +1,35 @@
 package com.profiler.io.service;
 
+import com.profiler.io.cache.RecommendationStore;
 import com.profiler.io.client.CpuServiceClient;
+import com.profiler.io.model.RecommendationFreshness;
 import com.profiler.io.model.RecommendationRequest;
 import com.profiler.io.model.RecommendationResponse;
+import com.profiler.io.util.Deadline;
+import com.profiler.io.util.SingleFlight;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.opentelemetry.instrumentation.annotations.WithSpan;
 import io.opentelemetry.instrumentation.annotations.SpanAttribute;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Level 2: Recommendation Service
@@ -21,18 +42,216 @@ public class RecommendationService {
     
     private final CustomerEnrichmentService customerEnrichmentService;
     private final CpuServiceClient cpuServiceClient;
+    private final CostClassScheduler costClassScheduler;
+    private final RecommendationStore recommendationStore;
+    private final SingleFlight<Long, RecommendationResponse> inFlightRecommendations;
+    private final boolean coalescingEnabled;
+    private final int cpuBatchSize;
+    private final boolean serveStored;
+    private final long storedMaxAgeMs;
+    private final boolean staleWhileRevalidate;
+    private final long freshMs;
+    private final long maxStaleMs;
+    private final long fallbackMaxStaleMs;
+    private final long fallbackTimeoutMs;
+    
+    private final ExecutorService refreshExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ConcurrentHashMap<Long, CompletableFuture<RecommendationResponse>> refreshes = new ConcurrentHashMap<>();
+    private final Semaphore refreshPermits;
+    private final Counter servedFresh;
+    private final Counter servedStale;
+    private final Counter fallbacks;
+    private final Counter refreshesRejected;
     
     public RecommendationService(CustomerEnrichmentService customerEnrichmentService,
-                                 CpuServiceClient cpuServiceClient) {
+                                 CpuServiceClient cpuServiceClient,
+                                 CostClassScheduler costClassScheduler,
+                                 RecommendationStore recommendationStore,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${recommendations.coalescing.enabled:false}") boolean coalescingEnabled,
+                                 @Value("${recommendations.batch.cpu-batch-size:50}") int cpuBatchSize,
+                                 @Value("${recommendations.precompute.serve-stored:false}") boolean serveStored,
+                                 @Value("${recommendations.precompute.max-age-seconds:3600}") long storedMaxAgeSeconds,
+                                 @Value("${recommendations.stale-while-revalidate.enabled:false}") boolean staleWhileRevalidate,
+                                 @Value("${recommendations.stale-while-revalidate.fresh-seconds:30}") long freshSeconds,
+                                 @Value("${recommendations.stale-while-revalidate.max-stale-seconds:300}") long maxStaleSeconds,
+                                 @Value("${recommendations.stale-while-revalidate.fallback-max-stale-seconds:3600}") long fallbackMaxStaleSeconds,
+                                 @Value("${recommendations.stale-while-revalidate.fallback-timeout-ms:3000}") long fallbackTimeoutMs,
+                                 @Value("${recommendations.stale-while-revalidate.refresh-concurrency:8}") int refreshConcurrency) {
         this.customerEnrichmentService = customerEnrichmentService;
         this.cpuServiceClient = cpuServiceClient;
+        this.costClassScheduler = costClassScheduler;
+        this.recommendationStore = recommendationStore;
+        this.inFlightRecommendations = new SingleFlight<>(meterRegistry, "recommendations.coalescing");
+        this.coalescingEnabled = coalescingEnabled;
+        this.cpuBatchSize = cpuBatchSize;
+        this.serveStored = serveStored;
+        this.storedMaxAgeMs = storedMaxAgeSeconds * 1000L;
+        this.staleWhileRevalidate = staleWhileRevalidate;
+        this.freshMs = freshSeconds * 1000L;
+        this.maxStaleMs = maxStaleSeconds * 1000L;
+        this.fallbackMaxStaleMs = fallbackMaxStaleSeconds * 1000L;
+        this.fallbackTimeoutMs = fallbackTimeoutMs;
+        this.refreshPermits = new Semaphore(refreshConcurrency);
+        
+        this.servedFresh = Counter.builder("recommendations.served.stored").tag("freshness", "fresh").register(meterRegistry);
+        this.servedStale = Counter.builder("recommendations.served.stored").tag("freshness", "stale").register(meterRegistry);
+        this.fallbacks = Counter.builder("recommendations.fallbacks").register(meterRegistry);
+        this.refreshesRejected = Counter.builder("recommendations.refreshes.rejected").register(meterRegistry);
+    }
+    
+    /**
+     * Gives running background refreshes a few seconds to finish, then interrupts them
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        refreshExecutor.shutdown();
+        if (!refreshExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+            refreshExecutor.shutdownNow();
+        }
     }
     
     @WithSpan("getRecommendations")
-    @Transactional(readOnly = true)
     public RecommendationResponse getRecommendations(@SpanAttribute("customerId") Long customerId) {
+        return getRecommendations(customerId, false);
+    }
+    
+    /**
+     * With serve-stored enabled, precomputed results are returned as they are (see computedAt)
+     * and fresh results are stored; forceRecompute bypasses the stored result.
+     * With stale-while-revalidate enabled, stored results within max-stale are returned at once
+     * and refreshed in the background, and failing or slow computations fall back to a stored
+     * result within fallback-max-stale. The response's freshness says which one was served.
+     */
+    @WithSpan("getRecommendations")
+    public RecommendationResponse getRecommendations(@SpanAttribute("customerId") Long customerId,
+                                                     @SpanAttribute("forceRecompute") boolean forceRecompute) {
         logger.info("Processing recommendation request for customer {}", customerId);
         
+        RecommendationResponse stored = serveStored || staleWhileRevalidate ? recommendationStore.get(customerId) : null;
+        if (stored != null && !forceRecompute) {
+            long ageMs = ageMs(stored);
+            if (staleWhileRevalidate) {
+                if (ageMs <= freshMs) {
+                    return served(stored, RecommendationFreshness.FRESH);
+                }
+                if (ageMs <= maxStaleMs) {
+                    refresh(customerId);
+                    return served(stored, RecommendationFreshness.STALE);
+                }
+            } else {
+                logger.debug("Serving stored recommendations for customer {} computed at {}",
+                             customerId, stored.getComputedAt());
+                return served(stored, ageMs <= storedMaxAgeMs ? RecommendationFreshness.FRESH : RecommendationFreshness.STALE);
+            }
+        }
+        
+        if (staleWhileRevalidate && stored != null && ageMs(stored) <= fallbackMaxStaleMs) {
+            return computeOrFallback(customerId, stored);
+        }
+        return computeAndStore(customerId);
+    }
+    
+    /**
+     * Waits for a (shared) refresh and serves the stored result when it fails, times out or
+     * cannot start because too many refreshes are running. The wait ends at the request's
+     * deadline, or after fallback-timeout without one. A refresh that times out keeps running
+     * and updates the store when it completes.
+     */
+    private RecommendationResponse computeOrFallback(Long customerId, RecommendationResponse stored) {
+        CompletableFuture<RecommendationResponse> refresh = refresh(customerId);
+        if (refresh == null) {
+            return fallback(customerId, stored, "refresh limit reached");
+        }
+        Deadline deadline = Deadline.current();
+        long waitMs = deadline != null ? Math.max(0, deadline.remainingMillis()) : fallbackTimeoutMs;
+        try {
+            return refresh.get(waitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return fallback(customerId, stored, "timed out after " + waitMs + " ms");
+        } catch (ExecutionException e) {
+            return fallback(customerId, stored, String.valueOf(e.getCause().getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return fallback(customerId, stored, "interrupted");
+        }
+    }
+    
+    private RecommendationResponse fallback(Long customerId, RecommendationResponse stored, String reason) {
+        logger.warn("Serving stale recommendations for customer {} computed at {}: {}",
+                    customerId, stored.getComputedAt(), reason);
+        fallbacks.increment();
+        return served(stored, RecommendationFreshness.STALE);
+    }
+    
+    /**
+     * Starts a background recomputation unless one is already running for the customer.
+     * Returns null when refresh-concurrency refreshes are already running.
+     */
+    private CompletableFuture<RecommendationResponse> refresh(Long customerId) {
+        CompletableFuture<RecommendationResponse> existing = refreshes.get(customerId);
+        if (existing != null) {
+            return existing;
+        }
+        if (!refreshPermits.tryAcquire()) {
+            refreshesRejected.increment();
+            return null;
+        }
+        
+        CompletableFuture<RecommendationResponse> own = new CompletableFuture<>();
+        existing = refreshes.putIfAbsent(customerId, own);
+        if (existing != null) {
+            refreshPermits.release();
+            return existing;
+        }
+        
+        refreshExecutor.execute(() -> {
+            try {
+                own.complete(computeAndStore(customerId));
+            } catch (RuntimeException e) {
+                logger.warn("Background refresh for customer {} failed: {}", customerId, e.getMessage());
+                own.completeExceptionally(e);
+            } finally {
+                refreshes.remove(customerId, own);
+                refreshPermits.release();
+            }
+        });
+        return own;
+    }
+    
+    private RecommendationResponse computeAndStore(Long customerId) {
+        RecommendationResponse response;
+        if (coalescingEnabled) {
+            response = inFlightRecommendations.execute(customerId, () -> computeRecommendations(customerId));
+        } else {
+            response = computeRecommendations(customerId);
+        }
+        
+        if (serveStored || staleWhileRevalidate) {
+            recommendationStore.put(response);
+        }
+        return response;
+    }
+    
+    /**
+     * Stored responses are shared, so the freshness is set on a copy
+     */
+    private RecommendationResponse served(RecommendationResponse stored, RecommendationFreshness freshness) {
+        (freshness == RecommendationFreshness.FRESH ? servedFresh : servedStale).increment();
+        return stored.toBuilder().freshness(freshness).build();
+    }
+    
+    private static long ageMs(RecommendationResponse response) {
+        return System.currentTimeMillis() - response.getComputedAt().toEpochMilli();
+    }
+    
+    private RecommendationResponse computeRecommendations(Long customerId) {
+        // A cached snapshot already knows the device count, which saves the scheduler's lookup
+        Integer deviceCount = customerEnrichmentService.cachedDeviceCount(customerId);
+        return costClassScheduler.execute(customerId, deviceCount, () -> doComputeRecommendations(customerId));
+    }
+    
+    private RecommendationResponse doComputeRecommendations(Long customerId) {
         long startTime = System.currentTimeMillis();
         
         // Enrich customer data (calls level 3, which calls 4 and 5)
@@ -43,10 +262,50 @@ public class RecommendationService {
         
         // Call CPU service for calculation
         RecommendationResponse response = cpuServiceClient.calculateRecommendations(request);
+        response.setComputedAt(computedAt(request, startTime));
+        response.setFreshness(RecommendationFreshness.FRESH);
         
         long totalTime = System.currentTimeMillis() - startTime;
         logger.info("Total recommendation processing time: {} ms", totalTime);
         
         return response;
     }
+    
+    /**
+     * A result is as old as the data it was computed from: the snapshot's loadedAt, which may come
+     * from the snapshot cache or store, else the start of the computation
+     */
+    private static Instant computedAt(RecommendationRequest request, long startTime) {
+        return request.getLoadedAt() != null ? request.getLoadedAt() : Instant.ofEpochMilli(startTime);
+    }
+    
+    @WithSpan("getBatchRecommendations")
+    public List<RecommendationResponse> getBatchRecommendations(List<Long> customerIds) {
+        logger.info("Processing batch recommendation request for {} customers", customerIds.size());
+        
+        long startTime = System.currentTimeMillis();
+        
+        List<RecommendationRequest> requests = customerEnrichmentService.enrichCustomersData(customerIds);
+        
+        long enrichmentTime = System.currentTimeMillis() - startTime;
+        logger.info("Batch data enrichment of {} customers completed in {} ms", requests.size(), enrichmentTime);
+        
+        Map<Long, Instant> loadTimes = new HashMap<>();
+        requests.forEach(request -> loadTimes.put(request.getCustomerId(), computedAt(request, startTime)));
+        
+        List<RecommendationResponse> responses = new ArrayList<>(requests.size());
+        for (int from = 0; from < requests.size(); from += cpuBatchSize) {
+            List<RecommendationRequest> chunk = requests.subList(from, Math.min(from + cpuBatchSize, requests.size()));
+            responses.addAll(cpuServiceClient.calculateBatchRecommendations(chunk));
+        }
+        responses.forEach(response -> {
+            response.setComputedAt(loadTimes.getOrDefault(response.getCustomerId(), Instant.ofEpochMilli(startTime)));
+            response.setFreshness(RecommendationFreshness.FRESH);
+        });
+        
+        long totalTime = System.currentTimeMillis() - startTime;
+        logger.info("Total batch recommendation processing time: {} ms", totalTime);
+        
+        return responses;
+    }
 }
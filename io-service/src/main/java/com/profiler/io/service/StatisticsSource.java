@@ -0,0 +1,17 @@
+package com.profiler.io.service;
+
+/**
+ * Where per-customer device statistics (type counts, average power) come from
+ */
+public enum StatisticsSource {
+    
+    /**
+     * Computed in the JVM from the loaded device rows
+     */
+    DEVICES,
+    
+    /**
+     * Read from the trigger-maintained customer_device_type_summary table
+     */
+    SUMMARY
+}
@@ -0,0 +1,11 @@
+package com.profiler.io.service;
+
+/**
+ * Thrown when a request could not get a share of its cost class within the maximum wait
+ */
+public class WorkRejectedException extends RuntimeException {
+    
+    public WorkRejectedException(String message) {
+        super(message);
+    }
+}
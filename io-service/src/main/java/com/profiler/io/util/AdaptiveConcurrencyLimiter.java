@@ -0,0 +1,140 @@
+package com.profiler.io.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AIMD concurrency limit driven by latency. Every completed call is a sample:
+ * the limit grows by one per limit's worth of samples while the smoothed latency stays within {@code tolerance}
+ * times the baseline (minimum) latency and the limit is actually being used, and
+ * shrinks by {@code backoffRatio} when the smoothed latency exceeds that or a call
+ * failed, at most once per smoothed round trip so one slow burst is not counted many times.
+ * Calls beyond the current limit are rejected immediately instead of queueing.
+ * The baseline is re-learned every baseline window so it follows gradual drift.
+ */
+public class AdaptiveConcurrencyLimiter {
+    
+    private static final double SMOOTHING = 0.1;
+    
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double backoffRatio;
+    private final long baselineWindowNanos;
+    
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+    
+    // guarded by this
+    private double estimatedLimit;
+    private long baselineRttNanos = Long.MAX_VALUE;
+    private long baselineResetAt;
+    private double smoothedRttNanos;
+    private long lastBackoffAt;
+    
+    private final Counter rejected;
+    
+    public AdaptiveConcurrencyLimiter(MeterRegistry meterRegistry,
+                                      String name,
+                                      int initialLimit,
+                                      int minLimit,
+                                      int maxLimit,
+                                      double tolerance,
+                                      double backoffRatio,
+                                      long baselineWindowSeconds) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.backoffRatio = backoffRatio;
+        this.baselineWindowNanos = TimeUnit.SECONDS.toNanos(baselineWindowSeconds);
+        this.estimatedLimit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.limit = (int) estimatedLimit;
+        this.baselineResetAt = System.nanoTime() + baselineWindowNanos;
+        
+        this.rejected = Counter.builder(name + ".rejected").register(meterRegistry);
+        Gauge.builder(name + ".limit", this, limiter -> limiter.limit).register(meterRegistry);
+        Gauge.builder(name + ".in-flight", inFlight, AtomicInteger::get).register(meterRegistry);
+    }
+    
+    /**
+     * Returns a permit that must be released, or null when the limit is reached
+     */
+    public Permit tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                rejected.increment();
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return new Permit(System.nanoTime());
+            }
+        }
+    }
+    
+    public int getLimit() {
+        return limit;
+    }
+    
+    public int getInFlight() {
+        return inFlight.get();
+    }
+    
+    private void onSample(long rttNanos, int inFlightAtRelease, boolean dropped) {
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (now - baselineResetAt >= 0) {
+                baselineRttNanos = Long.MAX_VALUE;
+                baselineResetAt = now + baselineWindowNanos;
+            }
+            
+            if (dropped) {
+                backOff(now);
+            } else {
+                baselineRttNanos = Math.min(baselineRttNanos, rttNanos);
+                smoothedRttNanos = smoothedRttNanos == 0
+                        ? rttNanos
+                        : smoothedRttNanos + SMOOTHING * (rttNanos - smoothedRttNanos);
+                if (smoothedRttNanos > baselineRttNanos * tolerance) {
+                    backOff(now);
+                } else if (inFlightAtRelease * 2 >= estimatedLimit) {
+                    estimatedLimit = Math.min(maxLimit, estimatedLimit + 1 / estimatedLimit);
+                }
+            }
+            limit = (int) estimatedLimit;
+        }
+    }
+    
+    private void backOff(long now) {
+        if (now - lastBackoffAt >= smoothedRttNanos) {
+            estimatedLimit = Math.max(minLimit, estimatedLimit * backoffRatio);
+            lastBackoffAt = now;
+        }
+    }
+    
+    public final class Permit {
+        
+        private final long acquiredAt;
+        private boolean released;
+        
+        private Permit(long acquiredAt) {
+            this.acquiredAt = acquiredAt;
+        }
+        
+        /**
+         * Releases the permit; dropped marks a failed or timed-out call, which always backs off
+         */
+        public void release(boolean dropped) {
+            if (released) {
+                return;
+            }
+            released = true;
+            int inFlightAtRelease = inFlight.getAndDecrement();
+            onSample(System.nanoTime() - acquiredAt, inFlightAtRelease, dropped);
+        }
+    }
+}
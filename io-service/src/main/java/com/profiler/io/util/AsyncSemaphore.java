@@ -0,0 +1,103 @@
+package com.profiler.io.util;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counting semaphore that never blocks the caller. A permit is handed out as a future:
+ * completed immediately when one is free, otherwise queued (FIFO) and completed by a
+ * later {@link #release()}. A queued acquire that is not served within its timeout
+ * fails with RejectedExecutionException. A queued future that the caller cancels or
+ * completes itself leaves the queue and is never handed a permit.
+ */
+public class AsyncSemaphore {
+    
+    private final int permits;
+    private int available;
+    private final ArrayDeque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+    
+    public AsyncSemaphore(int permits) {
+        this.permits = permits;
+        this.available = permits;
+    }
+    
+    public CompletableFuture<Void> acquire(long timeoutMs) {
+        CompletableFuture<Void> waiter;
+        synchronized (this) {
+            if (available > 0 && waiters.isEmpty()) {
+                available--;
+                return CompletableFuture.completedFuture(null);
+            }
+            if (timeoutMs <= 0) {
+                return CompletableFuture.failedFuture(rejected(timeoutMs));
+            }
+            waiter = new CompletableFuture<>();
+            waiters.add(waiter);
+        }
+        waiter.whenComplete((ignored, error) -> {
+            if (error != null) {
+                synchronized (this) {
+                    waiters.remove(waiter);
+                }
+            }
+        });
+        
+        CompletableFuture.delayedExecutor(timeoutMs, TimeUnit.MILLISECONDS).execute(() -> {
+            boolean timedOut;
+            synchronized (this) {
+                timedOut = waiters.remove(waiter);
+            }
+            if (timedOut) {
+                waiter.completeExceptionally(rejected(timeoutMs));
+            }
+        });
+        return waiter;
+    }
+    
+    /**
+     * Takes a permit only if one is free right now
+     */
+    public synchronized boolean tryAcquire() {
+        if (available > 0 && waiters.isEmpty()) {
+            available--;
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Hands the permit to the oldest queued waiter, else returns it to the pool.
+     * Waiters already completed by their caller are skipped.
+     */
+    public void release() {
+        while (true) {
+            CompletableFuture<Void> waiter;
+            synchronized (this) {
+                waiter = waiters.poll();
+                if (waiter == null) {
+                    available = Math.min(permits, available + 1);
+                    return;
+                }
+            }
+            // Completed outside the lock: dependent stages run on this thread
+            if (waiter.complete(null)) {
+                return;
+            }
+        }
+    }
+    
+    public synchronized int inUse() {
+        return permits - available;
+    }
+    
+    public synchronized int queued() {
+        return waiters.size();
+    }
+    
+    private RejectedExecutionException rejected(long timeoutMs) {
+        return new RejectedExecutionException(
+                "All " + permits + " permits in use, none released within " + timeoutMs + " ms");
+    }
+}
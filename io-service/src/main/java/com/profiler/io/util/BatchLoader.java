@@ -0,0 +1,171 @@
+package com.profiler.io.util;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.opentelemetry.context.Context;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Collapses concurrent single-key loads into batches (dataloader style).
+ * Keys requested within {@code window} of the first pending key, or until
+ * {@code maxBatchSize} keys are pending, are loaded with one call of the batch
+ * function on a virtual thread; each waiter gets the value for its key, or null
+ * when the batch function returned none. Concurrent loads of the same key share a slot.
+ * The batch function runs in the OpenTelemetry context of the load that opened the batch
+ * and with the latest {@link Deadline} of its loads, so no load is cut short by another's.
+ * Closing the loader dispatches what is pending and stops its threads.
+ */
+public class BatchLoader<K, V> implements AutoCloseable {
+    
+    private final Function<List<K>, Map<K, V>> batchFunction;
+    private final int maxBatchSize;
+    private final long windowNanos;
+    private final ScheduledExecutorService timer;
+    private final ExecutorService dispatcher = Executors.newVirtualThreadPerTaskExecutor();
+    private final DistributionSummary batchSizes;
+    private final Timer waitTime;
+    
+    private final Object lock = new Object();
+    private Map<K, Pending<V>> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> scheduledFlush;
+    
+    public BatchLoader(MeterRegistry meterRegistry,
+                       String name,
+                       int maxBatchSize,
+                       long windowMicros,
+                       Function<List<K>, Map<K, V>> batchFunction) {
+        this.batchFunction = batchFunction;
+        this.maxBatchSize = maxBatchSize;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.timer = Executors.newSingleThreadScheduledExecutor(
+                runnable -> Thread.ofPlatform().daemon().name(name + "-flush").unstarted(runnable));
+        this.batchSizes = DistributionSummary.builder(name + ".batch.size")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.waitTime = Timer.builder(name + ".wait")
+                .description("Time a key waited for its batch to be dispatched")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+    
+    public V load(K key) {
+        return await(loadAsync(key));
+    }
+    
+    /**
+     * Joins a future from {@link #loadAsync}, rethrowing the batch function's exception as is
+     */
+    public static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+    
+    public CompletableFuture<V> loadAsync(K key) {
+        Map<K, Pending<V>> full = null;
+        CompletableFuture<V> future;
+        synchronized (lock) {
+            Pending<V> slot = pending.get(key);
+            if (slot != null) {
+                pending.put(key, slot.joinedBy(Deadline.current()));
+                return slot.future();
+            }
+            slot = new Pending<>(System.nanoTime(), Deadline.current(), Context.current(), new CompletableFuture<>());
+            pending.put(key, slot);
+            future = slot.future();
+            
+            if (pending.size() >= maxBatchSize) {
+                full = takePending();
+            } else if (pending.size() == 1) {
+                scheduledFlush = timer.schedule(this::flush, windowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (full != null) {
+            dispatch(full);
+        }
+        return future;
+    }
+    
+    /**
+     * Dispatches the keys still pending, stops the flush timer and lets running batches finish
+     */
+    @Override
+    public void close() {
+        flush();
+        timer.shutdownNow();
+        dispatcher.shutdown();
+    }
+    
+    private void flush() {
+        Map<K, Pending<V>> batch;
+        synchronized (lock) {
+            batch = takePending();
+        }
+        if (!batch.isEmpty()) {
+            dispatch(batch);
+        }
+    }
+    
+    private Map<K, Pending<V>> takePending() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        Map<K, Pending<V>> batch = pending;
+        pending = new LinkedHashMap<>();
+        return batch;
+    }
+    
+    private void dispatch(Map<K, Pending<V>> batch) {
+        long dispatchedAt = System.nanoTime();
+        batchSizes.record(batch.size());
+        batch.values().forEach(slot -> waitTime.record(dispatchedAt - slot.enqueuedAt(), TimeUnit.NANOSECONDS));
+        
+        Context context = batch.values().iterator().next().context();
+        Deadline deadline = latestDeadline(batch);
+        dispatcher.execute(context.wrap(() -> {
+            try {
+                Map<K, V> values = Deadline.callWith(deadline, () -> batchFunction.apply(new ArrayList<>(batch.keySet())));
+                batch.forEach((key, slot) -> slot.future().complete(values.get(key)));
+            } catch (RuntimeException | Error e) {
+                batch.values().forEach(slot -> slot.future().completeExceptionally(e));
+            }
+        }));
+    }
+    
+    private static <V> Deadline latestDeadline(Map<?, Pending<V>> batch) {
+        Deadline latest = batch.values().iterator().next().deadline();
+        for (Pending<V> slot : batch.values()) {
+            latest = Deadline.later(latest, slot.deadline());
+        }
+        return latest;
+    }
+    
+    private record Pending<V>(long enqueuedAt, Deadline deadline, Context context, CompletableFuture<V> future) {
+        
+        Pending<V> joinedBy(Deadline other) {
+            return new Pending<>(enqueuedAt, Deadline.later(deadline, other), context, future);
+        }
+    }
+}
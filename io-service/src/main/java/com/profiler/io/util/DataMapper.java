@@ -3,12 +3,19 @@ package com.profiler.io.util;
 import com.profiler.io.model.*;
 import org.springframework.stereotype.Component;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Component
 public class DataMapper {
     
+    private static final String UNKNOWN_STATUS = "UNKNOWN";
+    
     public DeviceContext toDeviceContext(Device device) {
         return DeviceContext.builder()
                 .id(device.getId())
@@ -20,6 +27,62 @@ public class DataMapper {
                 .build();
     }
     
+    public DeviceContext toDeviceContext(ResultSet row) throws SQLException {
+        return DeviceContext.builder()
+                .id(row.getLong("id"))
+                .deviceType(row.getString("device_type"))
+                .manufacturer(row.getString("manufacturer"))
+                .modelNumber(row.getString("model_number"))
+                .powerConsumption(row.getObject("power_consumption", Integer.class))
+                .status(row.getString("status"))
+                .build();
+    }
+    
+    public void appendDevice(DeviceSnapshot.Builder snapshot, ResultSet row) throws SQLException {
+        snapshot.add(
+                row.getLong("id"),
+                row.getString("device_type"),
+                row.getString("manufacturer"),
+                row.getString("model_number"),
+                row.getObject("power_consumption", Integer.class),
+                row.getString("status")
+        );
+    }
+    
+    /**
+     * Folds [deviceType, status, count, poweredCount, totalPower, minPower, maxPower]
+     * rows into one summary per device type with a status breakdown
+     */
+    public List<DeviceTypeSummary> toDeviceTypeSummaries(List<Object[]> rows) {
+        Map<String, DeviceTypeSummary> summaries = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            String deviceType = (String) row[0];
+            String status = row[1] != null ? (String) row[1] : UNKNOWN_STATUS;
+            int deviceCount = ((Number) row[2]).intValue();
+            Integer minPower = (Integer) row[5];
+            Integer maxPower = (Integer) row[6];
+            
+            DeviceTypeSummary summary = summaries.computeIfAbsent(deviceType, type -> DeviceTypeSummary.builder()
+                    .deviceType(type)
+                    .deviceCount(0)
+                    .poweredDeviceCount(0)
+                    .totalPowerConsumption(0L)
+                    .statusCounts(new LinkedHashMap<>())
+                    .build());
+            summary.setDeviceCount(summary.getDeviceCount() + deviceCount);
+            summary.setPoweredDeviceCount(summary.getPoweredDeviceCount() + ((Number) row[3]).intValue());
+            summary.setTotalPowerConsumption(summary.getTotalPowerConsumption() + ((Number) row[4]).longValue());
+            if (minPower != null && (summary.getMinPowerConsumption() == null || minPower < summary.getMinPowerConsumption())) {
+                summary.setMinPowerConsumption(minPower);
+            }
+            if (maxPower != null && (summary.getMaxPowerConsumption() == null || maxPower > summary.getMaxPowerConsumption())) {
+                summary.setMaxPowerConsumption(maxPower);
+            }
+            summary.getStatusCounts().merge(status, deviceCount, Integer::sum);
+        }
+        return new ArrayList<>(summaries.values());
+    }
+    
     public BuildingContext toBuildingContext(Building building, int deviceCount) {
         return BuildingContext.builder()
                 .id(building.getId())
@@ -29,6 +92,10 @@ public class DataMapper {
                 .build();
     }
     
+    public CustomerContext toCustomerContext(Customer customer) {
+        return new CustomerContext(customer.getId(), customer.getName(), customer.getCustomerType());
+    }
+    
     public CustomerContext toCustomerContext(Customer customer, int totalBuildings, int totalDevices) {
         return CustomerContext.builder()
                 .id(customer.getId())
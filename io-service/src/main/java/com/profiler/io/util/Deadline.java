@@ -0,0 +1,78 @@
+package com.profiler.io.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * End-to-end time budget of a request. It travels between services as the remaining
+ * milliseconds in {@link #HEADER}, so clock skew between hosts does not matter, and is
+ * bound to the handling thread for the duration of the request.
+ */
+public final class Deadline {
+    
+    public static final String HEADER = "X-Request-Budget-Ms";
+    
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+    
+    private final long expiresAtNanos;
+    
+    private Deadline(long expiresAtNanos) {
+        this.expiresAtNanos = expiresAtNanos;
+    }
+    
+    public static Deadline afterMillis(long budgetMs) {
+        return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMs));
+    }
+    
+    /**
+     * The deadline of the request handled by this thread, or null when it has none
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+    
+    /**
+     * Runs the work with the deadline bound to this thread; a null deadline runs it unbounded
+     */
+    public static <T> T callWith(Deadline deadline, Supplier<T> work) {
+        Deadline previous = CURRENT.get();
+        CURRENT.set(deadline);
+        try {
+            return work.get();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+    
+    /**
+     * The later of two deadlines, where null (no deadline) is later than any
+     */
+    static Deadline later(Deadline a, Deadline b) {
+        if (a == null || b == null) {
+            return null;
+        }
+        return a.expiresAtNanos - b.expiresAtNanos >= 0 ? a : b;
+    }
+    
+    /**
+     * Throws when the current thread's deadline has passed
+     */
+    public static void check() {
+        Deadline deadline = CURRENT.get();
+        if (deadline != null && deadline.isExpired()) {
+            throw new DeadlineExceededException("Request deadline exceeded");
+        }
+    }
+    
+    public long remainingMillis() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiresAtNanos - System.nanoTime()));
+    }
+    
+    public boolean isExpired() {
+        return expiresAtNanos - System.nanoTime() <= 0;
+    }
+}
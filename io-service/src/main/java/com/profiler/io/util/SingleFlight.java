@@ -0,0 +1,100 @@
+package com.profiler.io.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Per-key in-flight deduplication: concurrent callers for the same key share one
+ * computation. The first caller (leader) runs it on its own thread, later callers
+ * (joiners) block until the leader's result or exception is available, but no longer
+ * than their own {@link Deadline}. A leader that fails with its deadline exceeded does
+ * not fail its joiners, whose budgets may be larger: they try again, one of them leading.
+ */
+public class SingleFlight<K, V> {
+    
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter led;
+    private final Counter joined;
+    private final Counter retried;
+    
+    public SingleFlight(MeterRegistry meterRegistry, String name) {
+        this.led = Counter.builder(name).tag("role", "leader").register(meterRegistry);
+        this.joined = Counter.builder(name).tag("role", "joined").register(meterRegistry);
+        this.retried = Counter.builder(name).tag("role", "retried").register(meterRegistry);
+        Gauge.builder(name + ".in-flight", inFlight, ConcurrentHashMap::size).register(meterRegistry);
+    }
+    
+    public V execute(K key, Supplier<V> work) {
+        while (true) {
+            CompletableFuture<V> own = new CompletableFuture<>();
+            CompletableFuture<V> existing = inFlight.putIfAbsent(key, own);
+            if (existing == null) {
+                return lead(key, own, work);
+            }
+            
+            joined.increment();
+            try {
+                return await(existing);
+            } catch (DeadlineExceededException e) {
+                if (!existing.isCompletedExceptionally() || existing.exceptionNow() != e) {
+                    throw e;
+                }
+                // The leader's budget ran out; unless ours did too, try again
+                Deadline.check();
+                retried.increment();
+            }
+        }
+    }
+    
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+    
+    private V lead(K key, CompletableFuture<V> own, Supplier<V> work) {
+        led.increment();
+        V result;
+        try {
+            result = work.get();
+        } catch (RuntimeException | Error e) {
+            // Removed before completing, so joiners that try again do not find this attempt
+            inFlight.remove(key, own);
+            own.completeExceptionally(e);
+            throw e;
+        }
+        inFlight.remove(key, own);
+        own.complete(result);
+        return result;
+    }
+    
+    /**
+     * Waits for the leader until this thread's deadline, if it has one
+     */
+    private V await(CompletableFuture<V> future) {
+        Deadline deadline = Deadline.current();
+        try {
+            return deadline != null ? future.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS) : future.get();
+        } catch (TimeoutException e) {
+            throw new DeadlineExceededException("Request deadline exceeded while waiting for a shared computation");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a shared computation", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new CompletionException(e.getCause());
+        }
+    }
+}
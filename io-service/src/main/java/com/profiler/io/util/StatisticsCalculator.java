@@ -1,7 +1,9 @@
 package com.profiler.io.util;
 
+import com.profiler.io.model.DeviceSnapshot;
 import org.springframework.stereotype.Component;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -27,6 +29,13 @@ public class StatisticsCalculator {
                 .orElse(0.0);
     }
     
+    public Double calculateAveragePowerConsumption(long totalPowerConsumption, long poweredDeviceCount) {
+        if (poweredDeviceCount == 0) {
+            return 0.0;
+        }
+        return (double) totalPowerConsumption / poweredDeviceCount;
+    }
+    
     public Integer calculateTotalPowerConsumption(List<Integer> powerConsumptions) {
         return powerConsumptions.stream()
                 .mapToInt(Integer::intValue)
@@ -40,4 +49,30 @@ public class StatisticsCalculator {
                         Collectors.collectingAndThen(Collectors.counting(), Long::intValue)
                 ));
     }
+    
+    public Map<String, Long> calculateDeviceTypeCounts(DeviceSnapshot snapshot) {
+        String[] deviceTypes = snapshot.deviceTypes();
+        long[] counts = new long[deviceTypes.length];
+        for (int i = 0; i < snapshot.size(); i++) {
+            counts[snapshot.typeCode(i)]++;
+        }
+        
+        Map<String, Long> typeCounts = new HashMap<>();
+        for (int code = 0; code < deviceTypes.length; code++) {
+            typeCounts.put(deviceTypes[code], counts[code]);
+        }
+        return typeCounts;
+    }
+    
+    public Double calculateAveragePowerConsumption(DeviceSnapshot snapshot) {
+        long totalPowerConsumption = 0;
+        long poweredDeviceCount = 0;
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (snapshot.hasPowerConsumption(i)) {
+                totalPowerConsumption += snapshot.powerConsumption(i);
+                poweredDeviceCount++;
+            }
+        }
+        return calculateAveragePowerConsumption(totalPowerConsumption, poweredDeviceCount);
+    }
 }
@@ -0,0 +1,55 @@
+package com.profiler.io.cache;
+
+import com.profiler.io.model.RecommendationRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerSnapshotCacheTest {
+    
+    private static final long TTL_MS = 300_000;
+    
+    private final CustomerSnapshotCache cache = new CustomerSnapshotCache(new SimpleMeterRegistry(), true, 100, 1_000, 100, 300);
+    
+    @Test
+    void preloadedSnapshotExpiresWithItsFile() {
+        long now = System.currentTimeMillis();
+        
+        assertThat(cache.preload(7L, id -> stored(id, now - 1_000))).isEqualTo(true);
+        assertThat(cache.lookup(7L)).isNotNull();
+        
+        // Written longer than one cache TTL ago: already expired
+        assertThat(cache.preload(8L, id -> stored(id, now - TTL_MS - 1_000))).isEqualTo(false);
+        assertThat(cache.lookup(8L)).isNull();
+        assertThat(cache.size()).isEqualTo(1);
+    }
+    
+    @Test
+    void snapshotPreloadedAcrossAnInvalidationIsNotCached() {
+        boolean cached = cache.preload(7L, id -> {
+            SnapshotFileStore.StoredSnapshot old = stored(id, System.currentTimeMillis());
+            cache.invalidate(id);
+            return old;
+        });
+        
+        assertThat(cached).isEqualTo(false);
+        assertThat(cache.lookup(7L)).isNull();
+    }
+    
+    @Test
+    void preloadDoesNotReplaceANewerEntry() {
+        RecommendationRequest loaded = cache.get(7L, this::snapshot);
+        
+        assertThat(cache.preload(7L, id -> stored(id, System.currentTimeMillis() - 1_000))).isEqualTo(false);
+        assertThat(cache.lookup(7L)).isSameAs(loaded);
+    }
+    
+    private SnapshotFileStore.StoredSnapshot stored(Long customerId, long createdAt) {
+        return new SnapshotFileStore.StoredSnapshot(snapshot(customerId), createdAt);
+    }
+    
+    private RecommendationRequest snapshot(Long customerId) {
+        return RecommendationRequest.builder().customerId(customerId).build();
+    }
+}
@@ -0,0 +1,110 @@
+package com.profiler.io.cache;
+
+import com.profiler.io.codec.RecommendationRequestCodec;
+import com.profiler.io.model.DeviceContext;
+import com.profiler.io.model.RecommendationRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SnapshotFileStoreTest {
+    
+    private Path directory;
+    private SnapshotFileStore store;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("snapshot-store-test");
+        store = new SnapshotFileStore(new RecommendationRequestCodec(), new SimpleMeterRegistry(), true, directory, 1, 3600);
+    }
+    
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+    
+    @Test
+    void loadedSnapshotIsWrittenAndReadBack() {
+        RecommendationRequest loaded = store.get(7L, this::snapshot);
+        
+        assertThat(store.read(7L)).isEqualTo(loaded);
+        assertThat(store.get(7L, id -> {
+            throw new AssertionError("loaded again");
+        })).isEqualTo(loaded);
+    }
+    
+    @Test
+    void snapshotLoadedAcrossAnInvalidationIsNotWritten() {
+        RecommendationRequest loaded = store.get(7L, id -> {
+            RecommendationRequest old = snapshot(id);
+            store.invalidate(id);
+            return old;
+        });
+        
+        assertThat(loaded).isNotNull();
+        assertThat(store.read(7L)).isNull();
+        assertThat(store.get(7L, this::snapshot)).isEqualTo(loaded);
+        assertThat(store.read(7L)).isEqualTo(loaded);
+    }
+    
+    @Test
+    void snapshotLoadedAcrossInvalidateAllIsNotWritten() {
+        store.get(8L, id -> {
+            RecommendationRequest old = snapshot(id);
+            store.invalidateAll();
+            return old;
+        });
+        
+        assertThat(store.read(8L)).isNull();
+    }
+    
+    @Test
+    void failedLoadDoesNotBlockLaterWrites() {
+        try {
+            store.get(9L, id -> {
+                throw new IllegalStateException("database down");
+            });
+        } catch (IllegalStateException expected) {
+            // the next load must still be stored
+        }
+        
+        RecommendationRequest loaded = store.get(9L, this::snapshot);
+        assertThat(store.read(9L)).isEqualTo(loaded);
+    }
+    
+    @Test
+    void storedSnapshotKeepsItsLoadTime() {
+        Instant loadedAt = Instant.now().minusSeconds(120).truncatedTo(ChronoUnit.MILLIS);
+        store.get(7L, id -> {
+            RecommendationRequest loaded = snapshot(id);
+            loaded.setLoadedAt(loadedAt);
+            return loaded;
+        });
+        
+        assertThat(store.read(7L).getLoadedAt()).isEqualTo(loadedAt);
+        assertThat(store.readStored(7L).createdAt()).isEqualTo(loadedAt.toEpochMilli());
+    }
+    
+    private RecommendationRequest snapshot(Long customerId) {
+        return RecommendationRequest.builder()
+                .customerId(customerId)
+                .devices(List.of(DeviceContext.builder().id(1L).deviceType("SENSOR").powerConsumption(5).build()))
+                .build();
+    }
+}
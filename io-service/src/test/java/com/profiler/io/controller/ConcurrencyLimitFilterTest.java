@@ -0,0 +1,19 @@
+package com.profiler.io.controller;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConcurrencyLimitFilterTest {
+    
+    @Test
+    void onlySingleCustomerRequestsAreLimited() {
+        assertThat(ConcurrencyLimitFilter.isLimited("/api/recommendations/42")).isEqualTo(true);
+        
+        assertThat(ConcurrencyLimitFilter.isLimited("/api/recommendations/batch")).isEqualTo(false);
+        assertThat(ConcurrencyLimitFilter.isLimited("/api/recommendations")).isEqualTo(false);
+        assertThat(ConcurrencyLimitFilter.isLimited("/api/recommendations/")).isEqualTo(false);
+        assertThat(ConcurrencyLimitFilter.isLimited("/api/recommendations/42/extra")).isEqualTo(false);
+        assertThat(ConcurrencyLimitFilter.isLimited("/api/precompute")).isEqualTo(false);
+    }
+}
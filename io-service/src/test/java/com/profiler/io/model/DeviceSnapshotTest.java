@@ -0,0 +1,148 @@
+package com.profiler.io.model;
+
+import com.profiler.io.codec.RecommendationRequestCodec;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DeviceSnapshotTest {
+    
+    private static final String[] TYPES = {"SENSOR", "THERMOSTAT", "CAMERA", "LOCK", "LIGHT", "HVAC"};
+    private static final String[] MANUFACTURERS = {"Siemens", "Honeywell", "Johnson Controls", "Schneider Electric"};
+    private static final String[] STATUSES = {"ACTIVE", "INACTIVE", "MAINTENANCE"};
+    
+    private final RecommendationRequestCodec codec = new RecommendationRequestCodec();
+    
+    @Test
+    void viewReturnsTheAddedDevices() {
+        List<DeviceContext> devices = devices(1_000);
+        DeviceSnapshot snapshot = snapshotOf(devices);
+        
+        List<DeviceContext> view = snapshot.asDeviceContexts();
+        
+        assertThat(view).hasSize(devices.size());
+        assertThat(view).isEqualTo(devices);
+        assertThrows(IndexOutOfBoundsException.class, () -> view.get(devices.size()));
+        assertThrows(UnsupportedOperationException.class, () -> view.add(devices.get(0)));
+    }
+    
+    @Test
+    void codecEncodesTheViewLikeAContextList() {
+        List<DeviceContext> devices = devices(1_000);
+        DeviceSnapshot snapshot = snapshotOf(devices);
+        
+        byte[] fromView = codec.encode(request(snapshot.asDeviceContexts()));
+        byte[] fromList = codec.encode(request(devices));
+        
+        assertThat(fromView).isEqualTo(fromList);
+    }
+    
+    /**
+     * Filling a snapshot must allocate well under half of what materializing a
+     * DeviceContext per row does
+     */
+    @Test
+    void snapshotAllocatesLessThanMaterializedContexts() {
+        List<DeviceContext> rows = devices(100_000);
+        
+        // Warm up both paths so class loading and JIT do not count
+        for (int i = 0; i < 3; i++) {
+            snapshotOf(rows);
+            materialize(rows);
+        }
+        long columnar = allocatedBytes(() -> snapshotOf(rows));
+        long materialized = allocatedBytes(() -> materialize(rows));
+        
+        assertThat(columnar)
+                .as("columnar %d bytes, materialized %d bytes", columnar, materialized)
+                .isLessThan(materialized / 2);
+    }
+    
+    /**
+     * Encoding through the view reads the columns directly, so it must not allocate
+     * more than encoding an already materialized list
+     */
+    @Test
+    void encodingTheViewDoesNotMaterializeContexts() {
+        List<DeviceContext> rows = devices(100_000);
+        RecommendationRequest fromView = request(snapshotOf(rows).asDeviceContexts());
+        RecommendationRequest fromList = request(rows);
+        
+        for (int i = 0; i < 3; i++) {
+            codec.encode(fromView);
+            codec.encode(fromList);
+        }
+        long view = allocatedBytes(() -> codec.encode(fromView));
+        long list = allocatedBytes(() -> codec.encode(fromList));
+        
+        assertThat(view)
+                .as("view %d bytes, list %d bytes", view, list)
+                .isLessThan(list + 64 * 1024);
+    }
+    
+    private static List<DeviceContext> materialize(List<DeviceContext> rows) {
+        List<DeviceContext> contexts = new ArrayList<>();
+        for (DeviceContext row : rows) {
+            contexts.add(DeviceContext.builder()
+                    .id(row.getId())
+                    .deviceType(row.getDeviceType())
+                    .manufacturer(row.getManufacturer())
+                    .modelNumber(row.getModelNumber())
+                    .powerConsumption(row.getPowerConsumption())
+                    .status(row.getStatus())
+                    .build());
+        }
+        return contexts;
+    }
+    
+    private static long allocatedBytes(Supplier<?> work) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        Object result = work.get();
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        assertThat(result).isNotNull();
+        return allocated;
+    }
+    
+    private static DeviceSnapshot snapshotOf(List<DeviceContext> devices) {
+        DeviceSnapshot.Builder builder = DeviceSnapshot.builder();
+        for (DeviceContext device : devices) {
+            builder.add(device.getId(), device.getDeviceType(), device.getManufacturer(), device.getModelNumber(),
+                        device.getPowerConsumption(), device.getStatus());
+        }
+        return builder.build();
+    }
+    
+    private static RecommendationRequest request(List<DeviceContext> devices) {
+        return RecommendationRequest.builder()
+                .customerId(7L)
+                .devices(devices)
+                .build();
+    }
+    
+    /**
+     * Devices with ids above 1000 (delta encoded), every 7th without power
+     * and every 11th without a model number
+     */
+    private static List<DeviceContext> devices(int count) {
+        List<DeviceContext> devices = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            devices.add(DeviceContext.builder()
+                    .id(1_000L + i * 3L)
+                    .deviceType(TYPES[i % TYPES.length])
+                    .manufacturer(MANUFACTURERS[i % MANUFACTURERS.length])
+                    .modelNumber(i % 11 == 0 ? null : "MODEL-" + (i % 50))
+                    .powerConsumption(i % 7 == 0 ? null : 5 + i % 400)
+                    .status(STATUSES[i % STATUSES.length])
+                    .build());
+        }
+        return devices;
+    }
+}
@@ -0,0 +1,193 @@
+package com.profiler.io.service;
+
+import com.profiler.io.cache.CustomerSnapshotCache;
+import com.profiler.io.cache.SnapshotFileStore;
+import com.profiler.io.codec.RecommendationRequestCodec;
+import com.profiler.io.model.Building;
+import com.profiler.io.model.BuildingContext;
+import com.profiler.io.model.Customer;
+import com.profiler.io.model.Device;
+import com.profiler.io.model.RecommendationRequest;
+import com.profiler.io.repository.BuildingRepository;
+import com.profiler.io.repository.CustomerRepository;
+import com.profiler.io.repository.DeviceRepository;
+import com.profiler.io.util.DataMapper;
+import com.profiler.io.util.StatisticsCalculator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The GROUPED strategy must load buildings and device counts with one statement,
+ * however many buildings the customer has; customers with 1 and 50 buildings are compared
+ */
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class BuildingAnalysisServiceQueryCountTest {
+    
+    private static final int FEW_BUILDINGS = 1;
+    private static final int MANY_BUILDINGS = 50;
+    
+    @MockBean
+    private RecommendationRequestCodec codec; // required by the application's RestTemplate bean
+    
+    @Autowired
+    private TestEntityManager entityManager;
+    
+    @Autowired
+    private CustomerRepository customerRepository;
+    
+    @Autowired
+    private BuildingRepository buildingRepository;
+    
+    @Autowired
+    private DeviceRepository deviceRepository;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    private Statistics statistics;
+    private Long fewBuildingsCustomerId;
+    private Long manyBuildingsCustomerId;
+    
+    @BeforeEach
+    void setUp() {
+        fewBuildingsCustomerId = persistCustomer("Small", FEW_BUILDINGS);
+        manyBuildingsCustomerId = persistCustomer("Acme", MANY_BUILDINGS);
+        entityManager.flush();
+        entityManager.clear();
+        
+        statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+        statistics.clear();
+    }
+    
+    @Test
+    void groupedStrategyQueryCountDoesNotDependOnBuildings() {
+        BuildingAnalysisService service = service(BuildingLoadStrategy.GROUPED);
+        
+        assertThat(service.analyzeBuildingsForCustomer(fewBuildingsCustomerId)).hasSize(FEW_BUILDINGS);
+        long fewBuildingsStatements = statementsSinceLastCheck();
+        assertThat(service.analyzeBuildingsForCustomer(manyBuildingsCustomerId)).hasSize(MANY_BUILDINGS);
+        long manyBuildingsStatements = statementsSinceLastCheck();
+        
+        assertThat(fewBuildingsStatements).isEqualTo(1);
+        assertThat(manyBuildingsStatements).isEqualTo(fewBuildingsStatements);
+    }
+    
+    @Test
+    void groupedStrategyMatchesPerBuildingCounts() {
+        List<BuildingContext> perBuilding = sorted(service(BuildingLoadStrategy.PER_BUILDING).analyzeBuildingsForCustomer(manyBuildingsCustomerId));
+        assertThat(statementsSinceLastCheck()).isEqualTo(1 + MANY_BUILDINGS);
+        
+        List<BuildingContext> grouped = sorted(service(BuildingLoadStrategy.GROUPED).analyzeBuildingsForCustomer(manyBuildingsCustomerId));
+        
+        assertThat(statementsSinceLastCheck()).isEqualTo(1);
+        assertThat(grouped).isEqualTo(perBuilding);
+    }
+    
+    @Test
+    void enrichmentQueryCountDoesNotDependOnBuildings() {
+        CustomerEnrichmentService enrichment = enrichmentService(service(BuildingLoadStrategy.GROUPED));
+        
+        RecommendationRequest few = enrichment.enrichCustomerData(fewBuildingsCustomerId);
+        long fewBuildingsStatements = statementsSinceLastCheck();
+        RecommendationRequest many = enrichment.enrichCustomerData(manyBuildingsCustomerId);
+        long manyBuildingsStatements = statementsSinceLastCheck();
+        
+        assertThat(few.getBuildings()).hasSize(FEW_BUILDINGS);
+        assertThat(many.getBuildings()).hasSize(MANY_BUILDINGS);
+        assertThat(many.getDevices()).hasSize(devicesFor(MANY_BUILDINGS));
+        // Customer, devices and buildings with their device counts
+        assertThat(fewBuildingsStatements).isEqualTo(3);
+        assertThat(manyBuildingsStatements).isEqualTo(fewBuildingsStatements);
+    }
+    
+    private Long persistCustomer(String name, int buildings) {
+        Customer customer = entityManager.persist(Customer.builder()
+                .name(name)
+                .email(name.toLowerCase() + "@example.com")
+                .customerType("LARGE")
+                .build());
+        for (int b = 0; b < buildings; b++) {
+            Building building = entityManager.persist(Building.builder()
+                    .name(name + " building " + b)
+                    .buildingType(b % 2 == 0 ? "COMMERCIAL" : "RESIDENTIAL")
+                    .squareMeters(100 * (b + 1))
+                    .customer(customer)
+                    .build());
+            // Some buildings have no devices, to cover the outer join
+            for (int d = 0; d < devicesIn(b); d++) {
+                entityManager.persist(Device.builder()
+                        .name("Device " + b + "-" + d)
+                        .deviceType("SENSOR")
+                        .powerConsumption(10 * d)
+                        .status("ACTIVE")
+                        .building(building)
+                        .build());
+            }
+        }
+        return customer.getId();
+    }
+    
+    private static int devicesIn(int building) {
+        return (building + 1) % 4;
+    }
+    
+    private static int devicesFor(int buildings) {
+        int devices = 0;
+        for (int b = 0; b < buildings; b++) {
+            devices += devicesIn(b);
+        }
+        return devices;
+    }
+    
+    /**
+     * Statements prepared since the previous call; the persistence context is cleared
+     * so that the next load cannot be served from it
+     */
+    private long statementsSinceLastCheck() {
+        long statements = statistics.getPrepareStatementCount();
+        entityManager.clear();
+        statistics.clear();
+        return statements;
+    }
+    
+    private BuildingAnalysisService service(BuildingLoadStrategy strategy) {
+        return new BuildingAnalysisService(buildingRepository, deviceRepository, null, new DataMapper(), strategy);
+    }
+    
+    private CustomerEnrichmentService enrichmentService(BuildingAnalysisService buildingAnalysisService) {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        DataMapper dataMapper = new DataMapper();
+        DeviceAggregationService deviceAggregationService = new DeviceAggregationService(buildingAnalysisService,
+                dataMapper, new StatisticsCalculator(), DeviceLoadStrategy.ENTITY, StatisticsSource.DEVICES);
+        return new CustomerEnrichmentService(customerRepository, deviceAggregationService, buildingAnalysisService,
+                dataMapper,
+                new CustomerSnapshotCache(meterRegistry, false, 1, 1, 1, 1),
+                new SnapshotFileStore(codec, meterRegistry, false, Path.of("unused"), 1, 1),
+                transactionManager, meterRegistry, false, false, 500, false, 1, 1);
+    }
+    
+    private static List<BuildingContext> sorted(List<BuildingContext> contexts) {
+        return contexts.stream().sorted(Comparator.comparing(BuildingContext::getId)).toList();
+    }
+}
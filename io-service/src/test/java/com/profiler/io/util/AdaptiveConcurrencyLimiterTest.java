@@ -0,0 +1,114 @@
+package com.profiler.io.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimiterTest {
+    
+    @Test
+    void callsBeyondTheLimitAreShed() {
+        AdaptiveConcurrencyLimiter limiter = limiter(2, 1.0e9, 0.5);
+        
+        AdaptiveConcurrencyLimiter.Permit first = limiter.tryAcquire();
+        AdaptiveConcurrencyLimiter.Permit second = limiter.tryAcquire();
+        
+        assertThat(first).isNotNull();
+        assertThat(second).isNotNull();
+        assertThat(limiter.tryAcquire()).isNull();
+        assertThat(limiter.getInFlight()).isEqualTo(2);
+        
+        first.release(false);
+        // A second release of the same permit is ignored
+        first.release(false);
+        assertThat(limiter.getInFlight()).isEqualTo(1);
+        assertThat(limiter.tryAcquire()).isNotNull();
+    }
+    
+    @Test
+    void limitGrowsAdditivelyWhileItIsUsed() {
+        // Latency never exceeds the tolerance, so every sample is good
+        AdaptiveConcurrencyLimiter limiter = limiter(4, 1.0e9, 0.5);
+        
+        // Each good sample adds 1/limit, but only while at least half the limit is in flight:
+        // about half a step per round of releasing a full limit
+        for (int round = 0; round < 5; round++) {
+            int before = limiter.getLimit();
+            releaseAll(acquireAll(limiter), false);
+            assertThat(limiter.getLimit()).isLessThanOrEqualTo(before + 1);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(6);
+        
+        for (int round = 0; round < 100; round++) {
+            releaseAll(acquireAll(limiter), false);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(10);
+    }
+    
+    @Test
+    void limitDoesNotGrowWhileMostlyUnused() {
+        AdaptiveConcurrencyLimiter limiter = limiter(8, 1.0e9, 0.5);
+        
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire().release(false);
+        }
+        
+        assertThat(limiter.getLimit()).isEqualTo(8);
+    }
+    
+    @Test
+    void droppedCallsBackOffMultiplicativelyDownToTheMinimum() {
+        AdaptiveConcurrencyLimiter limiter = limiter(8, 1.0e9, 0.5);
+        
+        limiter.tryAcquire().release(true);
+        assertThat(limiter.getLimit()).isEqualTo(4);
+        
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire().release(true);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(2);
+    }
+    
+    @Test
+    void callsSlowerThanTheBaselineBackOff() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = limiter(8, 2.0, 0.5);
+        // Calls of a few milliseconds set the baseline, well above timer noise
+        for (int i = 0; i < 5; i++) {
+            call(limiter, 5);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(8);
+        
+        // Lifts the smoothed latency to about 25 ms, five times the baseline
+        call(limiter, 200);
+        
+        assertThat(limiter.getLimit()).isEqualTo(4);
+    }
+    
+    private static AdaptiveConcurrencyLimiter limiter(int initialLimit, double tolerance, double backoffRatio) {
+        return new AdaptiveConcurrencyLimiter(new SimpleMeterRegistry(), "test.concurrency",
+                initialLimit, 2, 10, tolerance, backoffRatio, 3600);
+    }
+    
+    private static void call(AdaptiveConcurrencyLimiter limiter, long millis) throws InterruptedException {
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire();
+        Thread.sleep(millis);
+        permit.release(false);
+    }
+    
+    private static List<AdaptiveConcurrencyLimiter.Permit> acquireAll(AdaptiveConcurrencyLimiter limiter) {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        AdaptiveConcurrencyLimiter.Permit permit;
+        while ((permit = limiter.tryAcquire()) != null) {
+            permits.add(permit);
+        }
+        return permits;
+    }
+    
+    private static void releaseAll(List<AdaptiveConcurrencyLimiter.Permit> permits, boolean dropped) {
+        permits.forEach(permit -> permit.release(dropped));
+    }
+}
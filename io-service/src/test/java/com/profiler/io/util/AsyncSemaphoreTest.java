@@ -0,0 +1,95 @@
+package com.profiler.io.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AsyncSemaphoreTest {
+    
+    @Test
+    void queuedAcquireIsCompletedByRelease() {
+        AsyncSemaphore semaphore = new AsyncSemaphore(1);
+        CompletableFuture<Void> first = semaphore.acquire(10_000);
+        CompletableFuture<Void> second = semaphore.acquire(10_000);
+        
+        assertThat(first.isDone()).isEqualTo(true);
+        assertThat(second.isDone()).isEqualTo(false);
+        assertThat(semaphore.queued()).isEqualTo(1);
+        assertThat(semaphore.tryAcquire()).isEqualTo(false);
+        
+        semaphore.release();
+        
+        assertThat(second.isDone()).isEqualTo(true);
+        assertThat(semaphore.inUse()).isEqualTo(1);
+        assertThat(semaphore.queued()).isEqualTo(0);
+        
+        semaphore.release();
+        assertThat(semaphore.inUse()).isEqualTo(0);
+    }
+    
+    @Test
+    void queuedAcquireTimesOutWithoutLosingThePermit() throws Exception {
+        AsyncSemaphore semaphore = new AsyncSemaphore(1);
+        semaphore.acquire(0).get();
+        CompletableFuture<Void> waiting = semaphore.acquire(20);
+        
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> waiting.get(5, TimeUnit.SECONDS));
+        assertThat(failure.getCause() instanceof RejectedExecutionException).isEqualTo(true);
+        assertThat(semaphore.queued()).isEqualTo(0);
+        
+        semaphore.release();
+        assertThat(semaphore.inUse()).isEqualTo(0);
+        assertThat(semaphore.tryAcquire()).isEqualTo(true);
+    }
+    
+    @Test
+    void cancelledAcquireLeavesTheQueueWithoutTakingThePermit() {
+        AsyncSemaphore semaphore = new AsyncSemaphore(1);
+        assertThat(semaphore.tryAcquire()).isEqualTo(true);
+        CompletableFuture<Void> cancelled = semaphore.acquire(10_000);
+        CompletableFuture<Void> waiting = semaphore.acquire(10_000);
+        
+        cancelled.cancel(false);
+        assertThat(semaphore.queued()).isEqualTo(1);
+        
+        semaphore.release();
+        assertThat(waiting.isDone()).isEqualTo(true);
+        assertThat(semaphore.inUse()).isEqualTo(1);
+        
+        semaphore.release();
+        assertThat(semaphore.inUse()).isEqualTo(0);
+        assertThat(semaphore.tryAcquire()).isEqualTo(true);
+    }
+    
+    @Test
+    void releaseSkipsAcquiresCompletedByTheirCaller() {
+        AsyncSemaphore semaphore = new AsyncSemaphore(1);
+        assertThat(semaphore.tryAcquire()).isEqualTo(true);
+        CompletableFuture<Void> completed = semaphore.acquire(10_000);
+        
+        // Completed normally by the caller, so it is still queued when the permit comes back
+        completed.complete(null);
+        semaphore.release();
+        
+        assertThat(semaphore.queued()).isEqualTo(0);
+        assertThat(semaphore.inUse()).isEqualTo(0);
+        assertThat(semaphore.tryAcquire()).isEqualTo(true);
+    }
+    
+    @Test
+    void acquireWithoutTimeoutFailsFastWhenExhausted() {
+        AsyncSemaphore semaphore = new AsyncSemaphore(1);
+        assertThat(semaphore.tryAcquire()).isEqualTo(true);
+        
+        CompletableFuture<Void> rejected = semaphore.acquire(0);
+        
+        assertThat(rejected.isCompletedExceptionally()).isEqualTo(true);
+        assertThat(semaphore.queued()).isEqualTo(0);
+    }
+}
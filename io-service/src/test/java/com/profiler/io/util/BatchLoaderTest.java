@@ -0,0 +1,140 @@
+package com.profiler.io.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.ContextKey;
+import io.opentelemetry.context.Scope;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BatchLoaderTest {
+    
+    private static final ContextKey<String> REQUEST = ContextKey.named("request");
+    
+    private final List<List<Long>> batches = new CopyOnWriteArrayList<>();
+    private BatchLoader<Long, String> loader;
+    
+    @AfterEach
+    void tearDown() {
+        if (loader != null) {
+            loader.close();
+        }
+    }
+    
+    @Test
+    void keysWithinTheWindowAreLoadedInOneBatch() {
+        loader = loader(100, 20_000, this::values);
+        
+        CompletableFuture<String> first = loader.loadAsync(1L);
+        CompletableFuture<String> second = loader.loadAsync(2L);
+        CompletableFuture<String> third = loader.loadAsync(3L);
+        
+        assertThat(BatchLoader.await(first)).isEqualTo("value-1");
+        assertThat(BatchLoader.await(second)).isEqualTo("value-2");
+        assertThat(BatchLoader.await(third)).isEqualTo("value-3");
+        assertThat(batches).isEqualTo(List.of(List.of(1L, 2L, 3L)));
+    }
+    
+    @Test
+    void fullBatchIsDispatchedBeforeTheWindowEnds() throws Exception {
+        loader = loader(2, TimeUnit.MINUTES.toMicros(1), this::values);
+        
+        CompletableFuture<String> first = loader.loadAsync(1L);
+        CompletableFuture<String> second = loader.loadAsync(2L);
+        
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("value-1");
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("value-2");
+        assertThat(batches).isEqualTo(List.of(List.of(1L, 2L)));
+    }
+    
+    @Test
+    void loadsOfTheSameKeyShareASlot() {
+        loader = loader(100, 20_000, this::values);
+        
+        CompletableFuture<String> first = loader.loadAsync(7L);
+        CompletableFuture<String> second = loader.loadAsync(7L);
+        
+        assertThat(second).isSameAs(first);
+        assertThat(BatchLoader.await(first)).isEqualTo("value-7");
+        assertThat(batches).isEqualTo(List.of(List.of(7L)));
+    }
+    
+    @Test
+    void batchFailureFailsEveryLoadWithTheSameException() {
+        IllegalStateException failure = new IllegalStateException("database down");
+        loader = loader(100, 20_000, keys -> {
+            throw failure;
+        });
+        
+        CompletableFuture<String> first = loader.loadAsync(1L);
+        CompletableFuture<String> second = loader.loadAsync(2L);
+        
+        assertThat(assertThrows(IllegalStateException.class, () -> BatchLoader.await(first))).isSameAs(failure);
+        assertThat(assertThrows(IllegalStateException.class, () -> BatchLoader.await(second))).isSameAs(failure);
+    }
+    
+    @Test
+    void batchRunsWithTheLatestDeadlineInTheOpeningLoadsContext() {
+        Map<String, Object> seen = new HashMap<>();
+        loader = loader(100, 20_000, keys -> {
+            seen.put("deadline", Deadline.current());
+            seen.put("request", Context.current().get(REQUEST));
+            return values(keys);
+        });
+        Deadline soon = Deadline.afterMillis(60_000);
+        Deadline later = Deadline.afterMillis(120_000);
+        
+        CompletableFuture<String> first;
+        try (Scope scope = Context.current().with(REQUEST, "first").makeCurrent()) {
+            first = Deadline.callWith(soon, () -> loader.loadAsync(1L));
+        }
+        try (Scope scope = Context.current().with(REQUEST, "second").makeCurrent()) {
+            Deadline.callWith(later, () -> loader.loadAsync(2L));
+        }
+        BatchLoader.await(first);
+        
+        assertThat(seen.get("deadline")).isSameAs(later);
+        assertThat(seen.get("request")).isEqualTo("first");
+    }
+    
+    @Test
+    void batchRunsWithoutDeadlineWhenOneLoadHasNone() {
+        Map<String, Object> seen = new HashMap<>();
+        loader = loader(100, 20_000, keys -> {
+            seen.put("deadline", Deadline.current());
+            return values(keys);
+        });
+        
+        CompletableFuture<String> first = Deadline.callWith(Deadline.afterMillis(60_000), () -> loader.loadAsync(1L));
+        // Joins the slot of key 1 without a deadline
+        loader.loadAsync(1L);
+        BatchLoader.await(first);
+        
+        assertThat(seen.containsKey("deadline")).isEqualTo(true);
+        assertThat(seen.get("deadline")).isNull();
+    }
+    
+    private BatchLoader<Long, String> loader(int maxBatchSize, long windowMicros, Function<List<Long>, Map<Long, String>> function) {
+        return new BatchLoader<>(new SimpleMeterRegistry(), "test.loader", maxBatchSize, windowMicros, keys -> {
+            batches.add(keys);
+            return function.apply(keys);
+        });
+    }
+    
+    private Map<Long, String> values(List<Long> keys) {
+        Map<Long, String> values = new HashMap<>();
+        keys.forEach(key -> values.put(key, "value-" + key));
+        return values;
+    }
+}
@@ -0,0 +1,133 @@
+package com.profiler.io.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SingleFlightTest {
+    
+    private final SingleFlight<Long, String> flight = new SingleFlight<>(new SimpleMeterRegistry(), "test.flight");
+    private final CountDownLatch leaderMayFinish = new CountDownLatch(1);
+    private final AtomicInteger runs = new AtomicInteger();
+    
+    @Test
+    void joinerGetsTheLeadersResult() throws Exception {
+        CompletableFuture<String> leader = start(() -> flight.execute(1L, blockingWork(() -> "leader")));
+        CompletableFuture<String> joiner = startJoiner(() -> flight.execute(1L, () -> "joiner"));
+        
+        leaderMayFinish.countDown();
+        
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("leader");
+        assertThat(joiner.get(5, TimeUnit.SECONDS)).isEqualTo("leader");
+        assertThat(runs.get()).isEqualTo(1);
+    }
+    
+    @Test
+    void joinerStopsWaitingAtItsOwnDeadline() throws Exception {
+        CompletableFuture<String> leader = start(() -> flight.execute(1L, blockingWork(() -> "leader")));
+        awaitLeader();
+        
+        long start = System.nanoTime();
+        assertThrows(DeadlineExceededException.class,
+                () -> Deadline.callWith(Deadline.afterMillis(50), () -> flight.execute(1L, () -> "joiner")));
+        
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThanOrEqualTo(2_000L);
+        assertThat(leader.isDone()).isEqualTo(false);
+        leaderMayFinish.countDown();
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("leader");
+    }
+    
+    @Test
+    void joinerLeadsAgainWhenTheLeaderRunsOutOfItsDeadline() throws Exception {
+        CompletableFuture<String> leader = start(() -> flight.execute(1L, blockingWork(() -> {
+            throw new DeadlineExceededException("leader's budget is spent");
+        })));
+        CompletableFuture<String> joiner = startJoiner(() -> flight.execute(1L, () -> {
+            runs.incrementAndGet();
+            return "joiner";
+        }));
+        
+        leaderMayFinish.countDown();
+        
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+        assertThat(failure.getCause() instanceof DeadlineExceededException).isEqualTo(true);
+        assertThat(joiner.get(5, TimeUnit.SECONDS)).isEqualTo("joiner");
+        assertThat(runs.get()).isEqualTo(2);
+    }
+    
+    @Test
+    void joinerSharesOtherLeaderFailures() {
+        IllegalStateException failure = new IllegalStateException("cpu-service down");
+        CompletableFuture<String> leader = start(() -> flight.execute(1L, blockingWork(() -> {
+            throw failure;
+        })));
+        CompletableFuture<String> joiner = startJoiner(() -> flight.execute(1L, () -> "joiner"));
+        
+        leaderMayFinish.countDown();
+        
+        ExecutionException joinerFailure = assertThrows(ExecutionException.class, () -> joiner.get(5, TimeUnit.SECONDS));
+        assertThat(joinerFailure.getCause()).isSameAs(failure);
+        assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+        assertThat(runs.get()).isEqualTo(1);
+    }
+    
+    private Supplier<String> blockingWork(Supplier<String> result) {
+        return () -> {
+            runs.incrementAndGet();
+            try {
+                leaderMayFinish.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return result.get();
+        };
+    }
+    
+    private void awaitLeader() throws InterruptedException {
+        while (flight.inFlightCount() == 0) {
+            Thread.sleep(1);
+        }
+    }
+    
+    /**
+     * Starts the call once the leader is in flight and returns once it is waiting for the leader
+     */
+    private CompletableFuture<String> startJoiner(Supplier<String> call) {
+        try {
+            awaitLeader();
+            AtomicReference<Thread> thread = new AtomicReference<>();
+            CompletableFuture<String> joiner = start(() -> {
+                thread.set(Thread.currentThread());
+                return call.get();
+            });
+            while (thread.get() == null || thread.get().getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+            return joiner;
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private static CompletableFuture<String> start(Supplier<String> call) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        Thread.ofPlatform().daemon().start(() -> {
+            try {
+                result.complete(call.get());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+}
@@ -1,8 +1,10 @@
 package com.profiler.loadgen;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
 @SpringBootApplication
@@ -12,8 +14,15 @@ public class LoadGeneratorApplication {
         SpringApplication.run(LoadGeneratorApplication.class, args);
     }
     
+    /**
+     * With a request budget the client gives up after it, like a real caller would
+     */
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(@Value("${io-service.request-budget-ms:0}") int requestBudgetMs) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        if (requestBudgetMs > 0) {
+            requestFactory.setReadTimeout(requestBudgetMs);
+        }
+        return new RestTemplate(requestFactory);
     }
 }
@@ -18,13 +18,18 @@ public class IoServiceClient {
     
     private static final Logger logger = LoggerFactory.getLogger(IoServiceClient.class);
     
+    private static final String BUDGET_HEADER = "X-Request-Budget-Ms";
+    
     private final RestTemplate restTemplate;
     private final String ioServiceUrl;
+    private final long requestBudgetMs;
     
     public IoServiceClient(RestTemplate restTemplate,
-                          @Value("${io-service.url}") String ioServiceUrl) {
+                          @Value("${io-service.url}") String ioServiceUrl,
+                          @Value("${io-service.request-budget-ms:0}") long requestBudgetMs) {
         this.restTemplate = restTemplate;
         this.ioServiceUrl = ioServiceUrl;
+        this.requestBudgetMs = requestBudgetMs;
     }
     
     @WithSpan("IoServiceClient.getRecommendations")
@@ -32,6 +37,9 @@ public class IoServiceClient {
         String url = ioServiceUrl + "/api/recommendations/" + customerId;
         
         HttpHeaders headers = new HttpHeaders();
+        if (requestBudgetMs > 0) {
+            headers.set(BUDGET_HEADER, String.valueOf(requestBudgetMs));
+        }
         HttpEntity<Void> entity = new HttpEntity<>(headers);
         
         ResponseEntity<RecommendationResponse> response = restTemplate.exchange(